@@ -221,4 +221,24 @@ public class MapControllerTest {
 
     Assert.assertNotNull(exposeLayersArg.get("countries-fill"));
   }
+
+  @Test(description = "should project locally same as map")
+  public void projectorShouldMatchMapProjection() {
+    LngLat lngLat = new LngLat(11, 12);
+    ScreenPoint expected = controller.projectLngLatToScreenPoint(lngLat);
+    ScreenPoint actual = controller.projector().project(lngLat);
+
+    Assert.assertTrue(Math.abs(expected.x - actual.x) <= 1);
+    Assert.assertTrue(Math.abs(expected.y - actual.y) <= 1);
+  }
+
+  @Test(description = "should project many points in one call")
+  public void projectLngLatsShouldMatchSinglePointProjection() {
+    double[] points = controller.projectLngLats(new double[] { 11, 12, 13, 14 });
+    ScreenPoint expected = controller.projectLngLatToScreenPoint(new LngLat(13, 14));
+
+    Assert.assertEquals(points.length, 4);
+    Assert.assertEquals((int) Math.round(points[2]), expected.x);
+    Assert.assertEquals((int) Math.round(points[3]), expected.y);
+  }
 }
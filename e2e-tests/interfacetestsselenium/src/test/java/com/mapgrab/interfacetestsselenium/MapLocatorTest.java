@@ -11,6 +11,11 @@ import org.testng.annotations.Test;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.AfterMethod;
 
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
 /**
  * Unit test for simple App.
  */
@@ -112,4 +117,56 @@ public class MapLocatorTest {
     MapLocator locator = new MapLocator(driver, "map[id=mainMap] layer[id=countries-fill] filter[\"==\",[\"get\",\"NAME\"],\"Poland\"]");
     locator.last().fitMap();
   }
+
+  @Test(description = "MapLocatorBatch should resolve many locators in one call")
+  public void batchShouldResolveManyLocators() {
+    MapLocatorBatch batch = new MapLocatorBatch(driver)
+        .add("map[id=mainMap] layer[id=geolines]")
+        .add(new MapLocator(driver, "map[id=mainMap] layer[id=geolines] filter[\"==\",[\"get\",\"name\"],\"Tropic of Cancer\"]"));
+
+    LinkedHashMap<String, ArrayList<? extends Result>> results = batch.resolve();
+
+    Assert.assertEquals(results.get("map[id=mainMap] layer[id=geolines]").size(), 5);
+    Assert.assertEquals(results.get("map[id=mainMap] layer[id=geolines] filter[\"==\",[\"get\",\"name\"],\"Tropic of Cancer\"]").size(), 1);
+  }
+
+  @Test(description = "MapLocatorAsync count() should complete with element count")
+  public void asyncCountShouldReturnElementsCountOnMap() throws Exception {
+    MapLocatorAsync locator = new MapLocatorAsync(driver, "map[id=mainMap] layer[id=geolines]");
+
+    Assert.assertEquals(locator.count().get().intValue(), 5);
+  }
+
+  @Test(description = "explain() should report resolved layers and resolver counts")
+  public void explainShouldReportQueryProfile() {
+    MapLocator locator = new MapLocator(driver, "map[id=mainMap] layer[id=geolines]");
+
+    QueryExplanation explanation = locator.explain();
+
+    Assert.assertEquals(explanation.resultCount, 5);
+    Assert.assertEquals(explanation.maps.get(0).mapId, "mainMap");
+    Assert.assertEquals(explanation.maps.get(0).layerIds.get(0), "geolines");
+    Assert.assertEquals(explanation.maps.get(0).resolvers.get(0).layerType, "line");
+  }
+
+  @Test(description = "screenshotImage() should capture only locator rect")
+  public void screenshotShouldCaptureLocatorRect() throws ToManyElementsError, ElementNotExisisError {
+    MapLocator locator = new MapLocator(driver, "map[id=mainMap] layer[id=geolines] filter[\"==\",[\"get\",\"name\"],\"Equator\"]");
+
+    BoundingBox bbox = locator.boundingBox();
+    BufferedImage image = locator.screenshotImage();
+
+    Assert.assertEquals(image.getWidth(), bbox.width);
+    Assert.assertEquals(image.getHeight(), bbox.height);
+  }
+
+  @Test(description = "MapAssertions should wait for count in browser")
+  public void assertionsShouldCheckCountOnMap() {
+    MapAssertions.assertThat(new MapLocator(driver, "map[id=mainMap] layer[id=geolines]")).isVisible().hasCount(5);
+    MapAssertions.assertThat(new MapLocator(driver, "map[id=mainMap] layer[id=notExisting]")).isHidden();
+
+    Assert.assertThrows(MapAssertionError.class, () -> MapAssertions
+        .assertThat(new MapLocator(driver, "map[id=mainMap] layer[id=geolines]")).timeout(Duration.ofMillis(500))
+        .hasCount(4));
+  }
 }
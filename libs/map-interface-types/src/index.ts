@@ -3,6 +3,9 @@ export * from './lib/interfaces/map-rect';
 export * from './lib/interfaces/public-interface';
 export * from './lib/interfaces/models';
 export * from './lib/interfaces/result-feature';
+export * from './lib/interfaces/packed-result';
+export * from './lib/interfaces/trace';
+export * from './lib/interfaces/query-explanation';
 export * from './lib/interfaces/map-interface';
 export * from './lib/interfaces/utils-interface';
 
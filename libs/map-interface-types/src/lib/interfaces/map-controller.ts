@@ -58,11 +58,44 @@ export interface MapControllerInterface {
   removeBackground(): void;
   waitToMapLoaded(): Promise<boolean> | boolean;
   waitToMapStable(): Promise<void> | void;
+  isMapStable(): boolean;
   waitToMapRepaint(): Promise<void> | void;
   projectLngLatToScreenPoint(lngLat: LngLatLike): PointInterface;
   unprojectScreenPointToLngLat(point: PointInterface): LngLatInterface;
+  projectLngLats(lngLats: number[]): number[];
+  unprojectScreenPoints(points: number[]): number[];
+  getCameraSnapshot(): CameraSnapshot;
+  captureLayers(
+    layerIds: string[],
+    clip: MapRectInterface,
+    onCapture: (capture: LayerCapture) => void,
+    signal?: AbortSignal
+  ): Promise<void>;
 }
 
+export type CameraSnapshot = {
+  center: LngLatInterface;
+  zoom: number;
+  bearing: number;
+  pitch: number;
+  // Vertical field of view in radians
+  fov: number;
+  tileSize: number;
+  width: number;
+  height: number;
+  padding: PaddingOptions;
+  // Canvas container position on the page
+  offsetX: number;
+  offsetY: number;
+};
+
+// One layer of captureLayers, png is base64 of the clip (device pixels) with only
+// that layer visible
+export type LayerCapture = {
+  layerId: string;
+  png: string;
+};
+
 export type ExposeMutationResult = {
   [key in string]: { from: 'visible' | 'none'; to: 'visible' | 'none' };
 };
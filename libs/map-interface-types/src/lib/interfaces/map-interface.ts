@@ -6,4 +6,5 @@ export interface MapInterfaceI {
   mapEngine: MapEngine;
   map: MapType;
   mapId: string;
+  readonly epoch: number;
 }
@@ -11,6 +11,8 @@ export { Point };
 declare global {
   interface Window {
     __MAPGRAB__: MapGrabPublicInterfaceI;
+    // Set by the first traced driver command, enables span recording in the page
+    __MAPGRAB_TRACE__?: boolean;
   }
 }
 
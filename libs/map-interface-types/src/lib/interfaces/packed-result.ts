@@ -0,0 +1,20 @@
+// Columnar form of ResultFeatureInterface[] for drivers that decode it without
+// building per-feature object trees. Numeric columns are little endian typed
+// arrays encoded as base64, all strings are indexes into `strings` (-1 = null)
+export interface PackedQueryResultInterface {
+  count: number;
+  // Set for lazy queries, feature i has handle `${generation}:${queryId}:${i}` and
+  // the properties column is empty
+  generation?: string;
+  queryId?: number;
+  strings: string[];
+  // Int32Array, FEATURE_STRIDE values per feature:
+  // featureId, sourceId, layerId, mapId, isVisible, propertyOffset, propertyCount, pointOffset, pointCount
+  features: string;
+  // Int32Array of (key, value) string index pairs, values which are not strings are JSON encoded
+  properties: string;
+  // Float64Array of (x, y) pairs
+  points: string;
+  // Float64Array, RECT_STRIDE values per feature: x, y, width, height, right, bottom
+  rects: string;
+}
@@ -1,6 +1,9 @@
 import type { MapGrabLocator } from '@mapgrab/map-locator';
 import type { PointLike } from './models';
-import type { ResultFeatureInterface } from './result-feature';
+import type { LazyResultFeatureInterface, ResultFeatureInterface } from './result-feature';
+import type { PackedQueryResultInterface } from './packed-result';
+import type { TraceSpanInterface } from './trace';
+import type { QueryExplanationInterface } from './query-explanation';
 import { MapInterfaceI } from './map-interface';
 import { UtilsI } from './utils-interface';
 
@@ -10,9 +13,21 @@ export interface MapGrabPublicInterfaceI {
   registerMapInterface(mapId: string, mapInterface: MapInterfaceI): void;
   createLocator(locator: string): MapGrabLocator;
   waitMapStableForLocator(selector: string): Promise<void>;
+  waitMapStableForLocators(selectors: string[]): Promise<void>;
+  renderEpoch(locatorString: string): string;
+  stableEpochs(mapId?: string, locatorStrings?: string[]): Record<string, number> | null;
+  isStableAt(epochs: Record<string, number>, locatorStrings?: string[]): boolean;
+  onMapChange(locatorString: string, listener: () => void): () => void;
   query(locatorString: string): ResultFeatureInterface[];
+  explain(locatorString: string): QueryExplanationInterface;
+  queryPacked(locatorString: string, lazyProperties?: boolean): PackedQueryResultInterface;
+  queryLazy(locatorString: string): LazyResultFeatureInterface[];
+  retainProperties(handle: string): boolean;
+  resolveProperties(handles: string[]): (Record<string, any> | null)[];
+  traceSpans(since: number): TraceSpanInterface[];
   inspectAtPoint(mapId: string, point: PointLike): ResultFeatureInterface[];
   enableInspector(): void;
   disableInspector(): void;
   utils: UtilsI;
+  readonly generation: string;
 }
@@ -0,0 +1,31 @@
+// Profile of one locator query, all times in milliseconds
+export interface QueryExplanationInterface {
+  selector: string;
+  totalTime: number;
+  resolveMapsTime: number;
+  resultCount: number;
+  maps: MapQueryExplanationInterface[];
+}
+
+export interface MapQueryExplanationInterface {
+  mapId: string;
+  // Layers passed to queryRenderedFeatures, null when the locator does not restrict layers
+  layerIds: string[] | null;
+  resolveLayersTime: number;
+  queryRenderedFeaturesTime: number;
+  // Features returned by queryRenderedFeatures (layer and filter applied), per layer id
+  renderedFeatureCount: number;
+  renderedFeatureCountByLayer: Record<string, number>;
+  resolvers: LayerResolverExplanationInterface[];
+  resultCount: number;
+  visibleResultCount: number;
+  // Set when the map query failed, the map then contributes no results
+  error?: string;
+}
+
+export interface LayerResolverExplanationInterface {
+  layerType: string;
+  inputCount: number;
+  outputCount: number;
+  time: number;
+}
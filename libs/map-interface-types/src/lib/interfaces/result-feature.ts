@@ -10,3 +10,8 @@ export interface ResultFeatureInterface {
   interactionPoints: { x: number; y: number }[];
   rect: MapRectInterface;
 }
+
+// Result of a lazy query, properties stay in the page behind `handle`
+export type LazyResultFeatureInterface = Omit<ResultFeatureInterface, 'properties'> & {
+  handle: string;
+};
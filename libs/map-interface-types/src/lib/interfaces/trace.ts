@@ -0,0 +1,7 @@
+// Browser side span of a traced command, times in milliseconds relative to the
+// `since` timestamp passed to traceSpans
+export interface TraceSpanInterface {
+  name: string;
+  start: number;
+  duration: number;
+}
@@ -2,7 +2,11 @@ import type { MapGrabLocator } from '@mapgrab/map-locator';
 
 import type { MapInterface } from './map-interface';
 import { MapQuery } from './map-query';
-import type { ResultFeatureInterface } from '@mapgrab/map-interface-types';
+import type {
+  MapQueryExplanationInterface,
+  QueryExplanationInterface,
+  ResultFeatureInterface,
+} from '@mapgrab/map-interface-types';
 
 export class LocatorQueryResolver {
   constructor(private locator: MapGrabLocator, private mapInterfaces: Map<string, MapInterface>) {}
@@ -22,7 +26,51 @@ export class LocatorQueryResolver {
     }, []);
   }
 
-  private resolveMaps(): MapInterface[] {
+  // Same as resolve() but reports where the time goes instead of the results
+  public explain(selector: string): QueryExplanationInterface {
+    const startedAt = performance.now();
+    const maps: MapInterface[] = this.resolveMaps();
+    const resolveMapsTime = performance.now() - startedAt;
+
+    const mapExplanations = maps.map((mapInterface) => {
+      const explanation: MapQueryExplanationInterface = {
+        mapId: mapInterface.mapId,
+        layerIds: null,
+        resolveLayersTime: 0,
+        queryRenderedFeaturesTime: 0,
+        renderedFeatureCount: 0,
+        renderedFeatureCountByLayer: {},
+        resolvers: [],
+        resultCount: 0,
+        visibleResultCount: 0,
+      };
+
+      try {
+        const layersStartedAt = performance.now();
+        const layerIds = this.resolveLayers(mapInterface);
+        explanation.resolveLayersTime = performance.now() - layersStartedAt;
+        explanation.layerIds = layerIds ?? null;
+
+        const result = MapQuery.queryMap(mapInterface, { layerIds, filter: this.locator.filter }, explanation);
+        explanation.resultCount = result.length;
+        explanation.visibleResultCount = result.filter(({ isVisible }) => isVisible).length;
+      } catch (e) {
+        explanation.error = String((e && (e as Error).message) || e);
+      }
+
+      return explanation;
+    });
+
+    return {
+      selector,
+      totalTime: performance.now() - startedAt,
+      resolveMapsTime,
+      resultCount: mapExplanations.reduce((sum, { resultCount }) => sum + resultCount, 0),
+      maps: mapExplanations,
+    };
+  }
+
+  public resolveMaps(): MapInterface[] {
     const locatorMapIds: string[] = this.locator.map?.['id']?.value || [];
 
     if (locatorMapIds.length === 0) {
@@ -1,6 +1,8 @@
 import {
+  CameraSnapshot,
   ExposeMutationResult,
   FitBoundsOptions,
+  LayerCapture,
   LngLatBoundsLike,
   LngLatLike,
   MapControllerInterface,
@@ -8,7 +10,13 @@ import {
   SetViewOptions,
 } from '@mapgrab/map-interface-types';
 
-import type { CenterLike, LngLatInterface, MapType, PointInterface } from '@mapgrab/map-interface-types';
+import type {
+  CenterLike,
+  LngLatInterface,
+  MapInternalType,
+  MapType,
+  PointInterface,
+} from '@mapgrab/map-interface-types';
 
 export class MapLibreMapController<MapI extends MapType> implements MapControllerInterface {
   constructor(private readonly map: MapI) {}
@@ -45,10 +53,10 @@ export class MapLibreMapController<MapI extends MapType> implements MapControlle
     return this._waitToMapStable({ shouldRepaint: true });
   }
 
-  private _waitToMapStable(opts: { shouldRepaint: boolean }): Promise<void> | void {
+  public isMapStable(): boolean {
     const map = this.map;
 
-    const isStable = () =>
+    return (
       !map.isMoving() &&
       !map.isZooming() &&
       !map.isEasing() &&
@@ -67,7 +75,13 @@ export class MapLibreMapController<MapI extends MapType> implements MapControlle
       !map._repaint &&
       // https://github.com/maplibre/maplibre-gl-js/blob/8e74a6b0e9a76e75379a184fbc8b94cdf41de4e9/src/ui/handler/scroll_zoom.ts#L171
       //@ts-ignore
-      (!map.scrollZoom._lastWheelEventTime || performance.now() - map.scrollZoom._lastWheelEventTime > 40);
+      (!map.scrollZoom._lastWheelEventTime || performance.now() - map.scrollZoom._lastWheelEventTime > 40)
+    );
+  }
+
+  private _waitToMapStable(opts: { shouldRepaint: boolean }): Promise<void> | void {
+    const map = this.map;
+    const isStable = () => this.isMapStable();
 
     if (isStable() && !opts.shouldRepaint) {
       return;
@@ -155,6 +169,82 @@ export class MapLibreMapController<MapI extends MapType> implements MapControlle
     }
   }
 
+  // Shows one layer at a time (all others hidden) and hands over the clip of each
+  // repainted frame, layer visibility is restored at the end
+  public async captureLayers(
+    layerIds: string[],
+    clip: MapRectInterface,
+    onCapture: (capture: LayerCapture) => void,
+    signal?: AbortSignal
+  ): Promise<void> {
+    const map = this.map,
+      styleLayers = map.getStyle()?.layers ?? [],
+      visibility: { [layerId: string]: 'visible' | 'none' } = {};
+
+    styleLayers.forEach(({ id }) => (visibility[id] = map.getLayoutProperty(id, 'visibility') || 'visible'));
+
+    try {
+      for (const layerId of layerIds) {
+        if (signal?.aborted) {
+          return;
+        }
+
+        // Only the previous and the next layer change after the first iteration
+        this.exposeLayers([layerId], 'allOther');
+        map.triggerRepaint();
+        await this.waitToMapRepaint();
+
+        onCapture({ layerId, png: await this.grabCanvas(clip) });
+      }
+    } finally {
+      styleLayers.forEach(({ id }) => {
+        if ((map.getLayoutProperty(id, 'visibility') || 'visible') !== visibility[id]) {
+          map.setLayoutProperty(id, 'visibility', visibility[id]);
+        }
+      });
+    }
+  }
+
+  // Copies the clip (page coordinates) out of the next rendered frame, inside the
+  // render event the drawing buffer is still valid without preserveDrawingBuffer
+  private grabCanvas(clip: MapRectInterface): Promise<string> {
+    const map = this.map,
+      canvas = map.getCanvas();
+
+    return new Promise((resolve) => {
+      const onRender = () => {
+        //@ts-ignore
+        map.off('render', onRender);
+
+        const rect = canvas.getBoundingClientRect(),
+          ratio = canvas.width / rect.width,
+          crop = document.createElement('canvas');
+
+        crop.width = Math.max(1, Math.round(clip.width * ratio));
+        crop.height = Math.max(1, Math.round(clip.height * ratio));
+        crop
+          .getContext('2d')!
+          .drawImage(
+            canvas,
+            (clip.x - rect.x) * ratio,
+            (clip.y - rect.y) * ratio,
+            crop.width,
+            crop.height,
+            0,
+            0,
+            crop.width,
+            crop.height
+          );
+
+        resolve(crop.toDataURL('image/png').slice('data:image/png;base64,'.length));
+      };
+
+      //@ts-ignore
+      map.on('render', onRender);
+      map.triggerRepaint();
+    });
+  }
+
   public setBackgroundColor(backgroundColor: string): void {
     const map = this.map;
 
@@ -196,4 +286,56 @@ export class MapLibreMapController<MapI extends MapType> implements MapControlle
 
     return this.map.unproject([point.x - mapX, point.y - mapY]);
   }
+
+  // Flat [lng0, lat0, lng1, lat1, ...] in, flat [x0, y0, x1, y1, ...] out (not rounded)
+  public projectLngLats(lngLats: number[]): number[] {
+    const map = this.map,
+      { x: mapX, y: mapY } = map.getCanvasContainer().getBoundingClientRect(),
+      result = new Array<number>(lngLats.length);
+
+    for (let i = 0; i < lngLats.length; i += 2) {
+      const { x, y } = map.project([lngLats[i], lngLats[i + 1]]);
+
+      result[i] = x + mapX;
+      result[i + 1] = y + mapY;
+    }
+
+    return result;
+  }
+
+  public unprojectScreenPoints(points: number[]): number[] {
+    const map = this.map,
+      { x: mapX, y: mapY } = map.getCanvasContainer().getBoundingClientRect(),
+      result = new Array<number>(points.length);
+
+    for (let i = 0; i < points.length; i += 2) {
+      const { lng, lat } = map.unproject([points[i] - mapX, points[i + 1] - mapY]);
+
+      result[i] = lng;
+      result[i + 1] = lat;
+    }
+
+    return result;
+  }
+
+  public getCameraSnapshot(): CameraSnapshot {
+    const map = this.map,
+      transform = (map as MapInternalType).transform,
+      { lng, lat } = map.getCenter(),
+      { x, y } = map.getCanvasContainer().getBoundingClientRect();
+
+    return {
+      center: { lng, lat },
+      zoom: map.getZoom(),
+      bearing: map.getBearing(),
+      pitch: map.getPitch(),
+      fov: transform._fov ?? 0.6435011087932844,
+      tileSize: transform.tileSize ?? 512,
+      width: transform.width,
+      height: transform.height,
+      padding: map.getPadding(),
+      offsetX: x,
+      offsetY: y,
+    };
+  }
 }
@@ -5,17 +5,29 @@ import { MapLibreMapController } from './map-controllers/maplibre.map-controller
 import type { Map as MapBoxMap } from 'mapbox-gl';
 import type { MapControllerInterface, MapInterfaceI } from '@mapgrab/map-interface-types';
 
+const EPOCH_EVENTS = ['render', 'move', 'resize', 'styledata', 'sourcedata'];
+
 export class MapInterface implements MapInterfaceI {
   public readonly controller: MapControllerInterface;
   public readonly mapEngine: MapEngine = MapEngine.MapLibre;
+  private _epoch = 0;
 
   constructor(public readonly mapId: string, public readonly map: MapType) {
     this.mapEngine = map.getContainer().className.includes('mapbox') ? MapEngine.MapBox : MapEngine.MapLibre;
 
+    // Monotonic counter bumped on every render, camera or style/source change,
+    // rendered query results cannot change while the epoch stays the same
+    //@ts-ignore
+    EPOCH_EVENTS.forEach((eventName) => map.on(eventName, () => this._epoch++));
+
     if (this.mapEngine === MapEngine.MapBox) {
       this.controller = new MapBoxMapController(map as MapBoxMap);
     } else {
       this.controller = new MapLibreMapController(map);
     }
   }
+
+  public get epoch(): number {
+    return this._epoch;
+  }
 }
@@ -7,8 +7,9 @@ import { SymbolLayerResolver } from './layers-resolvers/symbol.resolver';
 import { getVisibleMapBBox } from './layers-resolvers/utils';
 import type { MapInterface } from './map-interface';
 import type { ResultFeature } from './models/result-feature';
-import type { GeoJSONFeature, PointLike } from '@mapgrab/map-interface-types';
+import type { GeoJSONFeature, MapQueryExplanationInterface, PointLike } from '@mapgrab/map-interface-types';
 import { groupBy } from './utils/collection';
+import { traceSpan } from './utils/trace';
 
 export class MapQuery {
   public static queryMap(
@@ -17,15 +18,20 @@ export class MapQuery {
       layerIds?: string[] | undefined;
       filter?: FilterSpecification | undefined;
       queryGeometry?: PointLike | undefined;
-    }
+    },
+    // Filled with stage timings and counts when given (explain)
+    explanation?: MapQueryExplanationInterface
   ): ResultFeature[] {
-    const queryFeatures: GeoJSONFeature[] = mapInterface.map.queryRenderedFeatures(
-        //@ts-ignore
-        opts.queryGeometry,
-        {
-          ...(opts.layerIds ? { layers: opts.layerIds } : {}),
-          ...(opts.filter ? { filter: opts.filter } : {}),
-        }
+    const queryStartedAt = performance.now();
+    const queryFeatures: GeoJSONFeature[] = traceSpan('queryRenderedFeatures', () =>
+        mapInterface.map.queryRenderedFeatures(
+          //@ts-ignore
+          opts.queryGeometry,
+          {
+            ...(opts.layerIds ? { layers: opts.layerIds } : {}),
+            ...(opts.filter ? { filter: opts.filter } : {}),
+          }
+        )
       ),
       groupedFeatures: { [key in LayerSpecification['type']]?: GeoJSONFeature[] } = groupBy(
         queryFeatures,
@@ -33,6 +39,17 @@ export class MapQuery {
       ),
       visibleMapBBox = getVisibleMapBBox(mapInterface.map);
 
+    if (explanation) {
+      explanation.queryRenderedFeaturesTime = performance.now() - queryStartedAt;
+      explanation.renderedFeatureCount = queryFeatures.length;
+      explanation.renderedFeatureCountByLayer = queryFeatures.reduce<Record<string, number>>((counts, { layer }) => {
+        const layerId = layer?.id || 'undef';
+        counts[layerId] = (counts[layerId] ?? 0) + 1;
+
+        return counts;
+      }, {});
+    }
+
     const bounds = mapInterface.map.getBounds()!;
 
     const mapBounds: [number, number, number, number] = [
@@ -49,21 +66,33 @@ export class MapQuery {
 
     return Object.entries(groupedFeatures).reduce<ResultFeature[]>((acc, [layerGroupType, groupFeatures]) => {
       let resolvedFeatures: ResultFeature[] = [];
+      const resolverStartedAt = performance.now();
 
       if (layerGroupType === 'fill') {
-        resolvedFeatures = FillLayerResolver.resolve(mapInterface, groupFeatures, mapbbpx);
+        resolvedFeatures = traceSpan('FillLayerResolver', () =>
+          FillLayerResolver.resolve(mapInterface, groupFeatures, mapbbpx)
+        );
       } else if (layerGroupType === 'symbol') {
-        resolvedFeatures = SymbolLayerResolver.resolve(
-          mapInterface,
-          opts.layerIds,
-          opts.filter,
-          opts.queryGeometry,
-          visibleMapBBox
+        resolvedFeatures = traceSpan('SymbolLayerResolver', () =>
+          SymbolLayerResolver.resolve(mapInterface, opts.layerIds, opts.filter, opts.queryGeometry, visibleMapBBox)
         );
       } else if (layerGroupType === 'line') {
-        resolvedFeatures = LineLayerResolver.resolve(mapInterface, groupFeatures, mapbbpx);
+        resolvedFeatures = traceSpan('LineLayerResolver', () =>
+          LineLayerResolver.resolve(mapInterface, groupFeatures, mapbbpx)
+        );
       } else if (layerGroupType === 'circle') {
-        resolvedFeatures = CircleLayerResolver.resolve(mapInterface, groupFeatures, mapbbpx);
+        resolvedFeatures = traceSpan('CircleLayerResolver', () =>
+          CircleLayerResolver.resolve(mapInterface, groupFeatures, mapbbpx)
+        );
+      }
+
+      if (explanation) {
+        explanation.resolvers.push({
+          layerType: layerGroupType,
+          inputCount: groupFeatures.length,
+          outputCount: resolvedFeatures.length,
+          time: performance.now() - resolverStartedAt,
+        });
       }
 
       return [...acc, ...resolvedFeatures];
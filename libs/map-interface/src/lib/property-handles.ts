@@ -0,0 +1,52 @@
+import type { ResultFeatureInterface } from '@mapgrab/map-interface-types';
+
+// Keeps feature properties of recent lazy queries in the page, clients get a
+// `generation:queryId:index` handle and fetch properties only when needed
+export class PropertyHandles {
+  private readonly queries: Map<number, Record<string, any>[]> = new Map();
+  private nextQueryId = 0;
+
+  constructor(private readonly generation: string, private readonly capacity = 256) {}
+
+  public register(results: ResultFeatureInterface[]): number {
+    const queryId = this.nextQueryId++;
+
+    this.queries.set(
+      queryId,
+      results.map(({ properties }) => properties)
+    );
+
+    if (this.queries.size > this.capacity) {
+      this.queries.delete(this.queries.keys().next().value);
+    }
+
+    return queryId;
+  }
+
+  public handle(queryId: number, index: number): string {
+    return `${this.generation}:${queryId}:${index}`;
+  }
+
+  // True while the handle's query is kept, and keeps it as the most recently used one
+  public retain(handle: string): boolean {
+    const [generation, queryId] = handle.split(':'),
+      properties = this.queries.get(Number(queryId));
+
+    if (generation !== this.generation || !properties) return false;
+
+    this.queries.delete(Number(queryId));
+    this.queries.set(Number(queryId), properties);
+
+    return true;
+  }
+
+  public resolve(handles: string[]): (Record<string, any> | null)[] {
+    return handles.map((handle) => {
+      const [generation, queryId, index] = handle.split(':');
+
+      if (generation !== this.generation) return null;
+
+      return this.queries.get(Number(queryId))?.[Number(index)] ?? null;
+    });
+  }
+}
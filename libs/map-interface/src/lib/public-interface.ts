@@ -7,12 +7,21 @@ import type { PointLike } from 'mapbox-gl';
 import {
   MapGrabEvents,
   type ResultFeatureInterface,
+  type LazyResultFeatureInterface,
   type MapGrabPublicInterfaceI,
+  type PackedQueryResultInterface,
+  type TraceSpanInterface,
+  type QueryExplanationInterface,
   type MapType,
   UtilsI,
 } from '@mapgrab/map-interface-types';
 import { UtilsInterface } from './utils-interface';
 import { Inspector } from './inspector/inspector';
+import { packResults } from './utils/packed-result';
+import { PropertyHandles } from './property-handles';
+import { traceSpan, traceSpansSince } from './utils/trace';
+
+const MAP_CHANGE_EVENTS = ['render', 'idle', 'sourcedata'];
 
 export function installMapGrab(map: MapType, mapId: string): void {
   if (!window['__MAPGRAB__']) {
@@ -37,9 +46,14 @@ export class MapGrabPublicInterface implements MapGrabPublicInterfaceI {
   private readonly mapInterfaces: Map<string, MapInterface> = new Map();
   private inspector?: Inspector | undefined;
   public readonly utils: UtilsI;
+  // Unique per installed interface, lets clients detect navigation or document change
+  public readonly generation: string;
+  private readonly propertyHandles: PropertyHandles;
 
   constructor() {
     this.utils = new UtilsInterface();
+    this.generation = `${Date.now().toString(36)}-${Math.random().toString(36).slice(2)}`;
+    this.propertyHandles = new PropertyHandles(this.generation);
   }
 
   public getMapInterface(mapId: string): MapInterface | undefined {
@@ -61,22 +75,172 @@ export class MapGrabPublicInterface implements MapGrabPublicInterfaceI {
   }
 
   public async waitMapStableForLocator(selector: string): Promise<void> {
-    const locator = new MapGrabLocator(selector);
-
-    if (locator.map) {
-      await Promise.all(
-        (locator.map?.['id']?.value || []).map((mapId) => this.getMapInterface(mapId)?.controller.waitToMapStable())
-      );
-    } else {
-      await Promise.all(Array.from(this.mapInterfaces.entries()).map(([, i]) => i.controller.waitToMapStable()));
+    await this.waitMapStableForLocators([selector]);
+  }
+
+  public async waitMapStableForLocators(selectors: string[]): Promise<void> {
+    const mapIds: Set<string> = new Set();
+
+    for (const selector of selectors) {
+      const locator = new MapGrabLocator(selector);
+
+      if (!locator.map) {
+        // Locator without map part queries all maps, so every map has to be stable
+        await Promise.all(Array.from(this.mapInterfaces.entries()).map(([, i]) => i.controller.waitToMapStable()));
+        return;
+      }
+
+      (locator.map?.['id']?.value || []).forEach((mapId) => mapIds.add(mapId));
+    }
+
+    await Promise.all(Array.from(mapIds).map((mapId) => this.getMapInterface(mapId)?.controller.waitToMapStable()));
+  }
+
+  public renderEpoch(locatorString: string): string {
+    const locator: MapGrabLocator = new MapGrabLocator(locatorString),
+      maps: MapInterface[] = new LocatorQueryResolver(locator, this.mapInterfaces).resolveMaps();
+
+    // Results carry page coordinates, a scroll or layout shift changes them without a render
+    return [
+      this.generation,
+      ...maps.map(({ mapId, epoch, map }) => {
+        const { x, y, width, height } = map.getContainer().getBoundingClientRect();
+
+        return `${mapId}:${epoch}@${Math.round(x)},${Math.round(y)},${Math.round(width)},${Math.round(height)}`;
+      }),
+    ].join('|');
+  }
+
+  // Epochs of the given map or of the maps resolved by the locators, null unless all
+  // of them are stable right now
+  public stableEpochs(mapId?: string, locatorStrings?: string[]): Record<string, number> | null {
+    const maps: MapInterface[] = this.resolveStabilityMaps(mapId, locatorStrings),
+      epochs: Record<string, number> = {};
+
+    for (const mapInterface of maps) {
+      if (!mapInterface.controller.isMapStable()) {
+        return null;
+      }
+
+      epochs[mapInterface.mapId] = mapInterface.epoch;
+    }
+
+    return epochs;
+  }
+
+  // Confirms maps reported by stableEpochs() did not render or change since and are
+  // still idle, so the stability wait can be skipped
+  public isStableAt(epochs: Record<string, number>, locatorStrings?: string[]): boolean {
+    const mapIds: string[] = Object.keys(epochs);
+
+    if (locatorStrings) {
+      const resolved: MapInterface[] = this.resolveStabilityMaps(undefined, locatorStrings);
+
+      if (resolved.length !== mapIds.length || resolved.some(({ mapId }) => !(mapId in epochs))) {
+        return false;
+      }
+    }
+
+    return mapIds.every((mapId) => {
+      const mapInterface = this.getMapInterface(mapId);
+
+      return !!mapInterface && mapInterface.epoch === epochs[mapId] && mapInterface.controller.isMapStable();
+    });
+  }
+
+  private resolveStabilityMaps(mapId?: string, locatorStrings?: string[]): MapInterface[] {
+    if (!locatorStrings) {
+      const mapInterface = mapId ? this.getMapInterface(mapId) : undefined;
+
+      return mapInterface ? [mapInterface] : [];
     }
+
+    const maps: Set<MapInterface> = new Set();
+
+    locatorStrings.forEach((locatorString) =>
+      new LocatorQueryResolver(new MapGrabLocator(locatorString), this.mapInterfaces)
+        .resolveMaps()
+        .forEach((mapInterface) => maps.add(mapInterface))
+    );
+
+    return Array.from(maps);
+  }
+
+  public onMapChange(locatorString: string, listener: () => void): () => void {
+    const locator: MapGrabLocator = new MapGrabLocator(locatorString),
+      subscribed: MapInterface[] = [];
+
+    const subscribe = () => {
+      new LocatorQueryResolver(locator, this.mapInterfaces).resolveMaps().forEach((mapInterface) => {
+        if (subscribed.includes(mapInterface)) return;
+
+        subscribed.push(mapInterface);
+        //@ts-ignore
+        MAP_CHANGE_EVENTS.forEach((eventName) => mapInterface.map.on(eventName, listener));
+      });
+    };
+
+    // Maps registered later may match the locator as well
+    const onMapInterfaceInit = () => {
+      subscribe();
+      listener();
+    };
+
+    subscribe();
+    window.addEventListener(MapGrabEvents.MAP_INTERFACE_INIT, onMapInterfaceInit);
+
+    return () => {
+      window.removeEventListener(MapGrabEvents.MAP_INTERFACE_INIT, onMapInterfaceInit);
+      //@ts-ignore
+      subscribed.forEach(({ map }) => MAP_CHANGE_EVENTS.forEach((eventName) => map.off(eventName, listener)));
+    };
   }
 
   public query(locatorString: string): ResultFeatureInterface[] {
     const locator: MapGrabLocator = new MapGrabLocator(locatorString),
       queryResolver: LocatorQueryResolver = new LocatorQueryResolver(locator, this.mapInterfaces);
 
-    return queryResolver.resolve();
+    return traceSpan('query', () => queryResolver.resolve());
+  }
+
+  public explain(locatorString: string): QueryExplanationInterface {
+    const locator: MapGrabLocator = new MapGrabLocator(locatorString);
+
+    return new LocatorQueryResolver(locator, this.mapInterfaces).explain(locatorString);
+  }
+
+  public queryPacked(locatorString: string, lazyProperties = false): PackedQueryResultInterface {
+    const results = this.query(locatorString);
+
+    if (!lazyProperties) {
+      return traceSpan('packResults', () => packResults(results));
+    }
+
+    const queryId = this.propertyHandles.register(results);
+
+    return traceSpan('packResults', () => packResults(results, { generation: this.generation, queryId }));
+  }
+
+  public queryLazy(locatorString: string): LazyResultFeatureInterface[] {
+    const results = this.query(locatorString),
+      queryId = this.propertyHandles.register(results);
+
+    return results.map(({ properties, ...result }, index) => ({
+      ...result,
+      handle: this.propertyHandles.handle(queryId, index),
+    }));
+  }
+
+  public retainProperties(handle: string): boolean {
+    return this.propertyHandles.retain(handle);
+  }
+
+  public resolveProperties(handles: string[]): (Record<string, any> | null)[] {
+    return this.propertyHandles.resolve(handles);
+  }
+
+  public traceSpans(since: number): TraceSpanInterface[] {
+    return traceSpansSince(since);
   }
 
   public inspectAtPoint(mapId: string, point: PointLike): ResultFeatureInterface[] {
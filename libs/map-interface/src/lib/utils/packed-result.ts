@@ -0,0 +1,80 @@
+import type { PackedQueryResultInterface, ResultFeatureInterface } from '@mapgrab/map-interface-types';
+
+const FEATURE_STRIDE = 9;
+const RECT_STRIDE = 6;
+
+// Without `lazy` properties are packed, with it only the handle source is sent
+export function packResults(
+  results: ResultFeatureInterface[],
+  lazy?: { generation: string; queryId: number }
+): PackedQueryResultInterface {
+  const strings: string[] = [],
+    stringIndexes = new Map<string, number>(),
+    properties: number[] = [],
+    points: number[] = [],
+    features = new Int32Array(results.length * FEATURE_STRIDE),
+    rects = new Float64Array(results.length * RECT_STRIDE);
+
+  const stringIndex = (value: unknown): number => {
+    if (value === undefined || value === null) return -1;
+
+    const str = typeof value === 'string' ? value : JSON.stringify(value);
+    let index = stringIndexes.get(str);
+
+    if (index === undefined) {
+      index = strings.push(str) - 1;
+      stringIndexes.set(str, index);
+    }
+
+    return index;
+  };
+
+  results.forEach((result, i) => {
+    const f = i * FEATURE_STRIDE,
+      r = i * RECT_STRIDE,
+      entries = lazy ? [] : Object.entries(result.properties ?? {}),
+      interactionPoints = result.interactionPoints ?? [];
+
+    features[f] = result.featureId != null ? stringIndex(String(result.featureId)) : -1;
+    features[f + 1] = stringIndex(result.sourceId);
+    features[f + 2] = stringIndex(result.layerId);
+    features[f + 3] = stringIndex(result.mapId);
+    features[f + 4] = result.isVisible ? 1 : 0;
+    features[f + 5] = properties.length / 2;
+    features[f + 6] = entries.length;
+    features[f + 7] = points.length / 2;
+    features[f + 8] = interactionPoints.length;
+
+    entries.forEach(([key, value]) => properties.push(stringIndex(key), stringIndex(value)));
+    interactionPoints.forEach(({ x, y }) => points.push(x, y));
+
+    rects[r] = result.rect.x;
+    rects[r + 1] = result.rect.y;
+    rects[r + 2] = result.rect.width;
+    rects[r + 3] = result.rect.height;
+    rects[r + 4] = result.rect.right;
+    rects[r + 5] = result.rect.bottom;
+  });
+
+  return {
+    count: results.length,
+    ...lazy,
+    strings,
+    features: toBase64(features),
+    properties: toBase64(new Int32Array(properties)),
+    points: toBase64(new Float64Array(points)),
+    rects: toBase64(rects),
+  };
+}
+
+function toBase64(array: Int32Array | Float64Array): string {
+  const bytes = new Uint8Array(array.buffer, array.byteOffset, array.byteLength),
+    chunks: string[] = [];
+
+  // String.fromCharCode spreads its arguments, chunk to stay below the call stack limit
+  for (let i = 0; i < bytes.length; i += 0x8000) {
+    chunks.push(String.fromCharCode.apply(null, bytes.subarray(i, i + 0x8000) as unknown as number[]));
+  }
+
+  return btoa(chunks.join(''));
+}
@@ -0,0 +1,31 @@
+import type { TraceSpanInterface } from '@mapgrab/map-interface-types';
+
+const CAPACITY = 4096;
+
+// Recent spans with absolute performance.now() start, commands pick the ones
+// recorded since they started
+const spans: TraceSpanInterface[] = [];
+
+export function traceSpan<T>(name: string, fn: () => T): T {
+  if (!window.__MAPGRAB_TRACE__) {
+    return fn();
+  }
+
+  const start = performance.now();
+
+  try {
+    return fn();
+  } finally {
+    if (spans.length >= CAPACITY) {
+      spans.splice(0, spans.length - CAPACITY + 1);
+    }
+
+    spans.push({ name, start, duration: performance.now() - start });
+  }
+}
+
+export function traceSpansSince(since: number): TraceSpanInterface[] {
+  return spans
+    .filter(({ start }) => start >= since)
+    .map(({ name, start, duration }) => ({ name, start: start - since, duration }));
+}
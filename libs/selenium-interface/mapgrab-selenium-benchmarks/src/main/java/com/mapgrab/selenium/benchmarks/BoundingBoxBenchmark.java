@@ -0,0 +1,34 @@
+package com.mapgrab.selenium.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mapgrab.selenium.BoundingBox;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoundingBoxBenchmark {
+  private final BoundingBox box = new BoundingBox(100, 120, 640, 480);
+
+  @Benchmark
+  public BoundingBox copyWithPaddingAndOffset() {
+    BoundingBox copy = box.copy();
+    copy.applyPadding(4, 8);
+    copy.applyOffset(-20, 35);
+
+    return copy;
+  }
+}
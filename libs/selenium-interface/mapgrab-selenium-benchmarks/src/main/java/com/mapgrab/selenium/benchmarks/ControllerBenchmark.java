@@ -0,0 +1,85 @@
+package com.mapgrab.selenium.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mapgrab.selenium.BoundingBox;
+import com.mapgrab.selenium.MapController;
+import com.mapgrab.selenium.MapGrabContext;
+import com.mapgrab.selenium.codec.MapGrabCodec;
+import com.mapgrab.selenium.controller.FitBoundsOptions;
+import com.mapgrab.selenium.controller.LngLat;
+import com.mapgrab.selenium.controller.MapBounds;
+import com.mapgrab.selenium.controller.PaddingOptions;
+import com.mapgrab.selenium.controller.SetViewOptions;
+
+// Controller commands and option serialization against a stubbed browser
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ControllerBenchmark {
+  private MapController controller;
+  private SetViewOptions setViewOptions;
+  private FitBoundsOptions fitBoundsOptions;
+  private MapBounds bounds;
+  private BoundingBox boundingBox;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    MapGrabContext context = new MapGrabContext(null)
+        .setExecutor(new StubJavascriptExecutor().respondWith(null));
+
+    controller = new MapController(context, "mainMap");
+
+    PaddingOptions padding = new PaddingOptions();
+    padding.top = 10.0;
+    padding.bottom = 10.0;
+
+    setViewOptions = new SetViewOptions().setCenter(new LngLat(21.01, 52.23));
+    setViewOptions.setZoom(12.5).setBearing(30.0).setPitch(45.0).setPadding(padding);
+
+    fitBoundsOptions = new FitBoundsOptions().setMaxZoom(14.0).setLinear(true).setOffset(new int[] { 10, 20 });
+
+    bounds = new MapBounds(new LngLat(14.1, 49.0), new LngLat(24.2, 54.9));
+    boundingBox = new BoundingBox(100, 120, 640, 480);
+  }
+
+  @Benchmark
+  public String encodeSetViewOptions() {
+    return MapGrabCodec.shared().encode(setViewOptions);
+  }
+
+  @Benchmark
+  public String encodeFitBoundsOptions() {
+    return MapGrabCodec.shared().encode(fitBoundsOptions);
+  }
+
+  @Benchmark
+  public void setView() {
+    controller.setView(setViewOptions);
+  }
+
+  @Benchmark
+  public void fitMapToBounds() {
+    controller.fitMapToBounds(bounds, fitBoundsOptions);
+  }
+
+  @Benchmark
+  public void fitMapToBoundingBox() {
+    controller.fitMapToBoundingBox(boundingBox, fitBoundsOptions);
+  }
+}
@@ -0,0 +1,60 @@
+package com.mapgrab.selenium.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mapgrab.selenium.MapGrabContext;
+import com.mapgrab.selenium.MapLocator;
+import com.mapgrab.selenium.codec.WireFormat;
+
+// Full locator path (command encoding, envelope unwrap, decoding, result cache,
+// visibility filter, merge) against a stubbed browser response
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LocatorQueryBenchmark {
+  private static final String SELECTOR = "map[id=mainMap] layer[id=poi-label]";
+
+  @Param({ "10", "1000", "50000" })
+  public int features;
+
+  @Param({ "JSON", "PACKED" })
+  public WireFormat wireFormat;
+
+  private MapGrabContext context;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    String payload = wireFormat == WireFormat.PACKED ? Payloads.queryResponsePacked(features)
+        : Payloads.queryResponseJson(features);
+
+    context = new MapGrabContext(null)
+        .setExecutor(new StubJavascriptExecutor().respondWith(payload))
+        .setWireFormat(wireFormat);
+  }
+
+  @Benchmark
+  public int count() {
+    return new MapLocator(context, SELECTOR).count();
+  }
+
+  @Benchmark
+  public int mergeByProperty() {
+    return new MapLocator(context, SELECTOR).merge("group").count();
+  }
+}
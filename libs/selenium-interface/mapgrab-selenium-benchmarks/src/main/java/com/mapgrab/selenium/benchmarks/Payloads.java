@@ -0,0 +1,158 @@
+package com.mapgrab.selenium.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.mapgrab.selenium.BoundingBox;
+import com.mapgrab.selenium.PackedQueryResult;
+import com.mapgrab.selenium.QueryResponse;
+import com.mapgrab.selenium.SingleResult;
+import com.mapgrab.selenium.codec.MapGrabCodec;
+import com.mapgrab.selenium.controller.ScreenPoint;
+
+// Query payloads shaped like ones recorded from a POI layer: 12 properties,
+// 1-4 interaction points, ~10% hidden features, merge key shared by 10 features
+public final class Payloads {
+  private static final int FEATURE_STRIDE = 9;
+  private static final int RECT_STRIDE = 6;
+
+  private Payloads() {
+  }
+
+  public static ArrayList<SingleResult> features(int count) {
+    Random random = new Random(count);
+    ArrayList<SingleResult> features = new ArrayList<SingleResult>(count);
+
+    for (int i = 0; i < count; i++) {
+      SingleResult feature = new SingleResult();
+      feature.featureId = String.valueOf(i);
+      feature.sourceId = "poi";
+      feature.layerId = "poi-label";
+      feature.mapId = "mainMap";
+      feature.isVisible = random.nextInt(10) != 0;
+      feature.properties = new LinkedHashMap<String, String>();
+      feature.properties.put("id", String.valueOf(i));
+      feature.properties.put("group", String.valueOf(i / 10));
+      feature.properties.put("name", "Point of interest " + i);
+      feature.properties.put("name_en", "Point of interest " + i);
+      feature.properties.put("class", "shop");
+      feature.properties.put("subclass", "supermarket");
+      feature.properties.put("rank", String.valueOf(random.nextInt(30)));
+      feature.properties.put("layer", "0");
+      feature.properties.put("level", String.valueOf(random.nextInt(3)));
+      feature.properties.put("indoor", "false");
+      feature.properties.put("opening_hours", "Mo-Sa 08:00-22:00");
+      feature.properties.put("website", "https://example.com/poi/" + i);
+
+      int x = random.nextInt(1920);
+      int y = random.nextInt(1080);
+      int width = 8 + random.nextInt(120);
+      int height = 8 + random.nextInt(40);
+
+      feature.rect = new BoundingBox(x, y, width, height);
+      feature.interactionPoints = new ArrayList<ScreenPoint>();
+
+      for (int p = 0, points = 1 + random.nextInt(4); p < points; p++) {
+        feature.interactionPoints.add(new ScreenPoint(x + random.nextInt(width), y + random.nextInt(height)));
+      }
+
+      features.add(feature);
+    }
+
+    return features;
+  }
+
+  // Same encoding as JSON.stringify({ epoch, data }) result of the locator query command
+  public static String queryResponseJson(int count) {
+    QueryResponse response = new QueryResponse();
+    response.epoch = "benchmark|mainMap:1";
+    response.data = features(count);
+
+    return MapGrabCodec.shared().encode(response);
+  }
+
+  // Mirrors packResults() from map-interface
+  public static String queryResponsePacked(int count) {
+    QueryResponse response = new QueryResponse();
+    response.epoch = "benchmark|mainMap:1";
+    response.packed = pack(features(count));
+
+    return MapGrabCodec.shared().encode(response);
+  }
+
+  public static PackedQueryResult pack(List<SingleResult> features) {
+    List<String> strings = new ArrayList<String>();
+    Map<String, Integer> stringIndexes = new LinkedHashMap<String, Integer>();
+    ByteBuffer featureColumn = buffer(features.size() * FEATURE_STRIDE * Integer.BYTES);
+    ByteBuffer rectColumn = buffer(features.size() * RECT_STRIDE * Double.BYTES);
+    ArrayList<Integer> properties = new ArrayList<Integer>();
+    ArrayList<Double> points = new ArrayList<Double>();
+
+    for (SingleResult feature : features) {
+      featureColumn.putInt(index(strings, stringIndexes, feature.featureId));
+      featureColumn.putInt(index(strings, stringIndexes, feature.sourceId));
+      featureColumn.putInt(index(strings, stringIndexes, feature.layerId));
+      featureColumn.putInt(index(strings, stringIndexes, feature.mapId));
+      featureColumn.putInt(feature.isVisible ? 1 : 0);
+      featureColumn.putInt(properties.size() / 2);
+      featureColumn.putInt(feature.properties.size());
+      featureColumn.putInt(points.size() / 2);
+      featureColumn.putInt(feature.interactionPoints.size());
+
+      feature.properties.forEach((key, value) -> {
+        properties.add(index(strings, stringIndexes, key));
+        properties.add(index(strings, stringIndexes, value));
+      });
+
+      feature.interactionPoints.forEach((point) -> {
+        points.add((double) point.x);
+        points.add((double) point.y);
+      });
+
+      rectColumn.putDouble(feature.rect.x);
+      rectColumn.putDouble(feature.rect.y);
+      rectColumn.putDouble(feature.rect.width);
+      rectColumn.putDouble(feature.rect.height);
+      rectColumn.putDouble(feature.rect.right);
+      rectColumn.putDouble(feature.rect.bottom);
+    }
+
+    ByteBuffer propertyColumn = buffer(properties.size() * Integer.BYTES);
+    properties.forEach(propertyColumn::putInt);
+
+    ByteBuffer pointColumn = buffer(points.size() * Double.BYTES);
+    points.forEach(pointColumn::putDouble);
+
+    PackedQueryResult packed = new PackedQueryResult();
+    packed.count = features.size();
+    packed.strings = strings.toArray(new String[0]);
+    packed.features = Base64.getEncoder().encodeToString(featureColumn.array());
+    packed.properties = Base64.getEncoder().encodeToString(propertyColumn.array());
+    packed.points = Base64.getEncoder().encodeToString(pointColumn.array());
+    packed.rects = Base64.getEncoder().encodeToString(rectColumn.array());
+
+    return packed;
+  }
+
+  private static ByteBuffer buffer(int size) {
+    return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static int index(List<String> strings, Map<String, Integer> stringIndexes, String value) {
+    if (value == null) {
+      return -1;
+    }
+
+    return stringIndexes.computeIfAbsent(value, (key) -> {
+      strings.add(key);
+
+      return strings.size() - 1;
+    });
+  }
+}
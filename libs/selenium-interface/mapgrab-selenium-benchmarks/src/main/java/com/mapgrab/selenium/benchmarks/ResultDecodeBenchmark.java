@@ -0,0 +1,52 @@
+package com.mapgrab.selenium.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mapgrab.selenium.QueryResponse;
+import com.mapgrab.selenium.SingleResult;
+import com.mapgrab.selenium.codec.MapGrabCodec;
+
+// Decoding only, JSON envelope parsed by Jackson vs packed columns
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ResultDecodeBenchmark {
+  @Param({ "10", "1000", "50000" })
+  public int features;
+
+  private String json;
+  private String packed;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    json = Payloads.queryResponseJson(features);
+    packed = Payloads.queryResponsePacked(features);
+  }
+
+  @Benchmark
+  public ArrayList<SingleResult> decodeJson() {
+    return MapGrabCodec.shared().decode(json, QueryResponse.class).getResults();
+  }
+
+  @Benchmark
+  public ArrayList<SingleResult> decodePacked() {
+    return MapGrabCodec.shared().decode(packed, QueryResponse.class).getResults();
+  }
+}
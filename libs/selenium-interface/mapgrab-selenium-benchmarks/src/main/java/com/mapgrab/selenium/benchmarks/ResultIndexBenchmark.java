@@ -0,0 +1,72 @@
+package com.mapgrab.selenium.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mapgrab.selenium.BoundingBox;
+import com.mapgrab.selenium.SingleResult;
+import com.mapgrab.selenium.spatial.ResultIndex;
+
+// Label sized rects spread over a 4k viewport
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResultIndexBenchmark {
+  @Param({ "1000", "20000" })
+  public int size;
+
+  private final Random random = new Random(7);
+  private ArrayList<SingleResult> results;
+  private ResultIndex<SingleResult> index;
+
+  @Setup
+  public void setup() {
+    results = new ArrayList<SingleResult>(size);
+
+    for (int i = 0; i < size; i++) {
+      SingleResult result = new SingleResult();
+      result.rect = new BoundingBox(random.nextInt(3840), random.nextInt(2160), 10 + random.nextInt(60),
+          10 + random.nextInt(20));
+      results.add(result);
+    }
+
+    index = ResultIndex.of(results);
+  }
+
+  @Benchmark
+  public ResultIndex<SingleResult> build() {
+    return ResultIndex.of(results);
+  }
+
+  @Benchmark
+  public List<SingleResult> pointQuery() {
+    return index.at(random.nextInt(3840), random.nextInt(2160));
+  }
+
+  @Benchmark
+  public List<SingleResult> overlapping() {
+    return index.overlapping(results.get(random.nextInt(size)));
+  }
+
+  @Benchmark
+  public List<SingleResult> nearestTen() {
+    return index.nearest(random.nextInt(3840), random.nextInt(2160), 10);
+  }
+}
@@ -0,0 +1,32 @@
+package com.mapgrab.selenium.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openqa.selenium.JavascriptExecutor;
+
+// Stands in for the browser, every async script gets the same recorded response
+// envelope so only client side work (encoding, decoding, post-processing) is measured
+public class StubJavascriptExecutor implements JavascriptExecutor {
+  private Object response;
+
+  public StubJavascriptExecutor respondWith(String encodedResult) {
+    Map<String, Object> envelope = new HashMap<String, Object>();
+    envelope.put("generation", "benchmark");
+    envelope.put("result", encodedResult);
+
+    this.response = envelope;
+
+    return this;
+  }
+
+  @Override
+  public Object executeScript(String script, Object... args) {
+    return null;
+  }
+
+  @Override
+  public Object executeAsyncScript(String script, Object... args) {
+    return response;
+  }
+}
@@ -21,6 +21,18 @@ public class BoundingBox {
     this.bottom = y + height;
   }
 
+  public BoundingBox copy() {
+    BoundingBox bbox = new BoundingBox();
+    bbox.x = x;
+    bbox.y = y;
+    bbox.width = width;
+    bbox.height = height;
+    bbox.right = right;
+    bbox.bottom = bottom;
+
+    return bbox;
+  }
+
   public void applyPadding(int padding) {
     this.applyPadding(padding, padding, padding, padding);
   }
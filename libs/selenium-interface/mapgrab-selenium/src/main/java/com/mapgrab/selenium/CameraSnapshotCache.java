@@ -0,0 +1,60 @@
+package com.mapgrab.selenium;
+
+import java.util.HashMap;
+import java.util.Objects;
+
+import com.mapgrab.selenium.controller.MapProjector;
+
+// Projector per map id, reused for local project/unproject until something that
+// can move the camera (controller mutation, mouse action, stale document) invalidates
+// it. Each projector remembers the document generation and map epoch its snapshot was
+// taken at, and is dropped once a command has seen the map at another epoch
+public class CameraSnapshotCache {
+  private static class Entry {
+    final MapProjector projector;
+    final String generation;
+    final Long epoch;
+
+    Entry(MapProjector projector, String generation, Long epoch) {
+      this.projector = projector;
+      this.generation = generation;
+      this.epoch = epoch;
+    }
+  }
+
+  private final HashMap<String, Entry> projectors = new HashMap<String, Entry>();
+
+  // Null when missing or taken at another generation/epoch than the current ones
+  public synchronized MapProjector get(String mapId, String generation, Long epoch) {
+    Entry entry = projectors.get(mapId);
+
+    if (entry == null) {
+      return null;
+    }
+
+    if (generation == null || epoch == null || !generation.equals(entry.generation)
+        || !Objects.equals(epoch, entry.epoch)) {
+      projectors.remove(mapId);
+
+      return null;
+    }
+
+    return entry.projector;
+  }
+
+  public synchronized void put(String mapId, String generation, Long epoch, MapProjector projector) {
+    if (generation == null || epoch == null) {
+      return;
+    }
+
+    projectors.put(mapId, new Entry(projector, generation, epoch));
+  }
+
+  public synchronized void invalidate(String mapId) {
+    projectors.remove(mapId);
+  }
+
+  public synchronized void invalidateAll() {
+    projectors.clear();
+  }
+}
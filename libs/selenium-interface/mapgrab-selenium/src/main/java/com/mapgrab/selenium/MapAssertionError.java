@@ -0,0 +1,21 @@
+package com.mapgrab.selenium;
+
+public class MapAssertionError extends AssertionError {
+  private final int count;
+  private final int checks;
+
+  public MapAssertionError(String errorMessage, int count, int checks) {
+    super(errorMessage);
+    this.count = count;
+    this.checks = checks;
+  }
+
+  // Visible feature count at the last check
+  public int getCount() {
+    return count;
+  }
+
+  public int getChecks() {
+    return checks;
+  }
+}
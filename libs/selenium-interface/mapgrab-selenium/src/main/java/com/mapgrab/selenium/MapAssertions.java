@@ -0,0 +1,140 @@
+package com.mapgrab.selenium;
+
+import java.time.Duration;
+
+import com.mapgrab.selenium.command.CommandRunner;
+import com.mapgrab.selenium.command.MapGrabCommand;
+
+// Counterpart of the Playwright toBeVisibleOnMap / toBeHiddenOnMap / toHaveCountOnMap
+// matchers. The condition is re-checked in the browser on every render of the locator
+// maps until it holds on a stable map or the timeout passes, one round trip per assertion.
+// Counts are visible features matched by the selector, merge() and nth() are not applied
+public class MapAssertions {
+  private static final MapGrabCommand EXPECT_COUNT = MapGrabCommand.forLocator("expectCount")
+      .perform("""
+          new Promise((resolve) => {
+            const [comparison, expected, timeout] = args.params;
+            let checks = 0;
+            let count = 0;
+            let confirming = false;
+            let finished = false;
+
+            const holds = () => {
+              checks++;
+              count = __MAPGRAB__.query(args.selector).filter(({ isVisible }) => isVisible).length;
+
+              switch (comparison) {
+                case 'GREATER_THAN':
+                  return count > expected;
+                case 'NOT_EQUAL':
+                  return count !== expected;
+                default:
+                  return count === expected;
+              }
+            };
+
+            const stop = () => {
+              finished = true;
+              clearTimeout(expiry);
+              unsubscribe();
+            };
+
+            const settle = (pass) => {
+              if (!finished) {
+                stop();
+                resolve({ pass, count, checks, waited: performance.now() - startedAt });
+              }
+            };
+
+            // Condition met mid render is confirmed once the maps are idle again
+            const check = () => {
+              if (finished || confirming || !holds()) {
+                return;
+              }
+
+              confirming = true;
+              __MAPGRAB__.waitMapStableForLocator(args.selector).then(() => {
+                confirming = false;
+
+                if (!finished && holds()) {
+                  settle(true);
+                }
+              });
+            };
+
+            const expiry = setTimeout(() => settle(holds()), Math.max(0, startedAt + timeout - performance.now()));
+            const unsubscribe = __MAPGRAB__.onMapChange(args.selector, check);
+            signal.addEventListener('abort', stop);
+
+            check();
+          })""");
+
+  // Used when neither the assertion nor the locator has a timeout
+  private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(5);
+
+  // Time for the verdict to travel back once the in-browser deadline has passed
+  private static final Duration RESPONSE_GRACE = Duration.ofSeconds(1);
+
+  private enum Comparison {
+    EQUAL,
+    NOT_EQUAL,
+    GREATER_THAN
+  }
+
+  private static class Outcome {
+    public boolean pass;
+    public int count;
+    public int checks;
+    public double waited;
+  }
+
+  private final MapLocator locator;
+  private final CommandRunner runner;
+  private Duration timeout;
+
+  public MapAssertions(MapLocator locator) {
+    this.locator = locator;
+    this.runner = locator.getContext().getCommandRunner();
+  }
+
+  public static MapAssertions assertThat(MapLocator locator) {
+    return new MapAssertions(locator);
+  }
+
+  public MapAssertions timeout(Duration timeout) {
+    this.timeout = timeout;
+
+    return this;
+  }
+
+  public MapAssertions isVisible() {
+    return this.expect(Comparison.GREATER_THAN, 0, "visible");
+  }
+
+  public MapAssertions isHidden() {
+    return this.expect(Comparison.EQUAL, 0, "hidden");
+  }
+
+  public MapAssertions hasCount(int count) {
+    return this.expect(Comparison.EQUAL, count, String.valueOf(count));
+  }
+
+  public MapAssertions doesNotHaveCount(int count) {
+    return this.expect(Comparison.NOT_EQUAL, count, "not " + count);
+  }
+
+  private MapAssertions expect(Comparison comparison, int expected, String description) {
+    Duration timeout = this.timeout != null ? this.timeout
+        : locator.getTimeout() != null ? locator.getTimeout() : DEFAULT_TIMEOUT;
+    Outcome outcome = runner.call(EXPECT_COUNT, locator.getSelector(), comparison, expected, timeout.toMillis())
+        .timeout(timeout.plus(RESPONSE_GRACE)).query(Outcome.class);
+
+    if (!outcome.pass) {
+      throw new MapAssertionError("Locator: " + locator.getSelector() + "\nExpected: " + description
+          + "\nReceived: " + outcome.count + " visible features after " + Math.round(outcome.waited) + "ms ("
+          + outcome.checks + " checks)", outcome.count, outcome.checks);
+    }
+
+    return this;
+  }
+}
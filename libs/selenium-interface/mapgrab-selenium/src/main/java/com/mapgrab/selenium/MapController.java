@@ -1,114 +1,226 @@
 package com.mapgrab.selenium;
 
+import java.awt.image.BufferedImage;
+import java.util.Base64;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.function.BiConsumer;
 
+import org.openqa.selenium.JavascriptException;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
 
-import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.databind.JavaType;
+import com.mapgrab.selenium.codec.MapGrabCodec;
+import com.mapgrab.selenium.command.CommandRunner;
+import com.mapgrab.selenium.command.MapGrabCommand;
+import com.mapgrab.selenium.controller.CameraSnapshot;
 import com.mapgrab.selenium.controller.FitBoundsOptions;
+import com.mapgrab.selenium.controller.LayerCaptures;
 import com.mapgrab.selenium.controller.LngLat;
 import com.mapgrab.selenium.controller.MapBounds;
+import com.mapgrab.selenium.controller.MapProjector;
 import com.mapgrab.selenium.controller.MutationState;
 import com.mapgrab.selenium.controller.ScreenPoint;
 import com.mapgrab.selenium.controller.SetAbsoluteViewOptions;
 import com.mapgrab.selenium.controller.SetViewOptions;
+import com.mapgrab.selenium.screenshot.ScreenshotCapturer;
 
 public class MapController {
+  private static final JavaType MUTATION_STATE_MAP = MapGrabCodec.shared().getTypeFactory()
+      .constructMapType(HashMap.class, String.class, MutationState.class);
+
+  private static final String CONTROLLER = "__MAPGRAB__.getMapInterface(args.mapId).controller";
+
+  private static final MapGrabCommand WAIT_TO_MAP_STABLE = MapGrabCommand.forMap("waitToMapStable")
+      .awaitStable();
+
+  private static final MapGrabCommand WAIT_TO_MAP_LOADED = MapGrabCommand.forMap("waitToMapLoaded")
+      .awaitLoaded();
+
+  private static final MapGrabCommand ENABLE_INSPECTOR = MapGrabCommand.forMap("enableInspector")
+      .perform("__MAPGRAB__.enableInspector()");
+
+  private static final MapGrabCommand DISABLE_INSPECTOR = MapGrabCommand.forMap("disableInspector")
+      .perform("__MAPGRAB__.disableInspector()");
+
+  private static final MapGrabCommand SET_VIEW = MapGrabCommand.forMap("setView")
+      .awaitLoaded()
+      .perform(CONTROLLER + ".setView(args.params[0])")
+      .awaitStable();
+
+  private static final MapGrabCommand SET_VIEW_ABSOLUTE = MapGrabCommand.forMap("setViewAbsolute")
+      .awaitLoaded()
+      .perform(CONTROLLER + ".setViewAbsolute(args.params[0])")
+      .awaitStable();
+
+  private static final MapGrabCommand FIT_MAP_TO_BOUNDS = MapGrabCommand.forMap("fitMapToBounds")
+      .perform(CONTROLLER + ".fitMapToBounds(args.params[0], args.params[1])")
+      .awaitStable();
+
+  private static final MapGrabCommand FIT_MAP_TO_BOUNDING_BOX = MapGrabCommand.forMap("fitMapToBoundingBox")
+      .perform(CONTROLLER + ".fitMapToBoundingBox(args.params[0], args.params[1])")
+      .awaitStable();
+
+  private static final MapGrabCommand SET_BACKGROUND_COLOR = MapGrabCommand.forMap("setBackgroundColor")
+      .perform(CONTROLLER + ".setBackgroundColor(args.params[0])")
+      .awaitStable();
+
+  private static final MapGrabCommand REMOVE_BACKGROUND = MapGrabCommand.forMap("removeBackground")
+      .perform(CONTROLLER + ".removeBackground()")
+      .awaitStable();
+
+  private static final MapGrabCommand PROJECT_LNG_LAT = MapGrabCommand.forMap("projectLngLatToScreenPoint")
+      .awaitStable()
+      .perform(CONTROLLER + ".projectLngLatToScreenPoint(args.params[0])");
+
+  private static final MapGrabCommand UNPROJECT_SCREEN_POINT = MapGrabCommand.forMap("unprojectScreenPointToLngLat")
+      .awaitStable()
+      .perform(CONTROLLER + ".unprojectScreenPointToLngLat(args.params[0])");
+
+  private static final MapGrabCommand PROJECT_LNG_LATS = MapGrabCommand.forMap("projectLngLats")
+      .awaitStable()
+      .perform(CONTROLLER + ".projectLngLats(args.params[0])");
+
+  private static final MapGrabCommand UNPROJECT_SCREEN_POINTS = MapGrabCommand.forMap("unprojectScreenPoints")
+      .awaitStable()
+      .perform(CONTROLLER + ".unprojectScreenPoints(args.params[0])");
+
+  private static final MapGrabCommand GET_CAMERA_SNAPSHOT = MapGrabCommand.forMap("getCameraSnapshot")
+      .awaitStable()
+      .perform(CONTROLLER + ".getCameraSnapshot()");
+
+  private static final MapGrabCommand EXPOSE_LAYERS = MapGrabCommand.forMap("exposeLayers")
+      .awaitStable()
+      .perform(CONTROLLER + ".exposeLayers(args.params[0], args.params[1] || 'allOther')")
+      .awaitStable();
+
+  private static final MapGrabCommand REVERT_EXPOSE_LAYERS = MapGrabCommand.forMap("revertExposeLayers")
+      .perform(CONTROLLER + ".revertExposeLayers(args.params[0])")
+      .awaitStable();
+
+  // Starts the layer walk in the page and returns, captures are collected by POLL_LAYER_CAPTURES
+  private static final MapGrabCommand START_LAYER_CAPTURE = MapGrabCommand.forMap("captureLayers")
+      .awaitStable()
+      .perform("""
+          (() => {
+            const captures = (window.__MAPGRAB_LAYER_CAPTURES__ = window.__MAPGRAB_LAYER_CAPTURES__ || {});
+            const captureId = args.params[2];
+            // Own controller, the command signal is aborted as soon as this command returns
+            const abortController = new AbortController();
+            const state = (captures[captureId] = { queue: [], done: false, abort: () => abortController.abort() });
+
+            const notify = () => {
+              const waiter = state.waiter;
+              state.waiter = undefined;
+              waiter && waiter();
+            };
+
+            %s.captureLayers(args.params[0], args.params[1], (capture) => {
+              state.queue.push(capture);
+              notify();
+            }, abortController.signal).then(
+              () => {
+                state.done = true;
+                notify();
+              },
+              (error) => {
+                state.error = String((error && error.message) || error);
+                state.done = true;
+                notify();
+              }
+            );
+
+            return captureId;
+          })()""".formatted(CONTROLLER));
+
+  // Waits until at least one more layer is captured or the walk has finished
+  private static final MapGrabCommand POLL_LAYER_CAPTURES = MapGrabCommand.forPage("pollLayerCaptures")
+      .perform("""
+          new Promise((resolve) => {
+            const captures = window.__MAPGRAB_LAYER_CAPTURES__ || {};
+            const captureId = args.params[0];
+            const state = captures[captureId];
+
+            if (!state) {
+              resolve({ captures: [], done: true, error: 'Layer capture state lost, document changed' });
+              return;
+            }
+
+            const drain = () => {
+              if (state.done) {
+                delete captures[captureId];
+              }
+
+              resolve({ captures: state.queue.splice(0), done: state.done, error: state.error });
+            };
+
+            if (state.queue.length > 0 || state.done) {
+              drain();
+              return;
+            }
+
+            state.waiter = drain;
+            signal.addEventListener('abort', () => (state.waiter = undefined));
+          })""");
+
+  private static final MapGrabCommand ABORT_LAYER_CAPTURE = MapGrabCommand.forPage("abortLayerCapture")
+      .perform("""
+          (() => {
+            const captures = window.__MAPGRAB_LAYER_CAPTURES__ || {};
+            const state = captures[args.params[0]];
+
+            if (state) {
+              delete captures[args.params[0]];
+              state.abort();
+            }
+          })()""");
+
+  protected final MapGrabContext context;
   protected final JavascriptExecutor executor;
+  protected final CommandRunner runner;
   protected final String mapId;
 
   public MapController(WebDriver driver, String mapId) {
+    this(MapGrabContext.of(driver), mapId);
+  }
+
+  public MapController(MapGrabContext context, String mapId) {
     this.mapId = mapId;
-    this.executor = (JavascriptExecutor) driver;
+    this.context = context;
+    this.executor = context.getExecutor();
+    this.runner = context.getCommandRunner();
   }
 
   public void waitToMapStable() {
-    this.waitToMapInterface();
-
-    this.executor.executeAsyncScript("""
-          const mapId = arguments[0];
-          const resolve = arguments[arguments.length - 1];
-
-          const isStablePromise = __MAPGRAB__.getMapInterface(mapId).controller.waitToMapStable();
-          isStablePromise && isStablePromise.then ? isStablePromise.then(resolve) : resolve();
-        """,
-        mapId);
+    runner.execute(WAIT_TO_MAP_STABLE, mapId);
   }
 
   public void enableInspector() {
-    this.waitToMapInterface();
-
-    this.executor.executeScript(
-        """
-               __MAPGRAB__.enableInspector();
-            """);
+    runner.execute(ENABLE_INSPECTOR, mapId);
   }
 
   public void disableInspector() {
-    this.waitToMapInterface();
-
-    this.executor.executeScript(
-        """
-               __MAPGRAB__.disableInspector();
-            """);
+    runner.execute(DISABLE_INSPECTOR, mapId);
   }
 
   public void waitToMapLoaded() {
-    this.waitToMapInterface();
-
-    this.executor.executeAsyncScript(
-        """
-              const mapId = arguments[0];
-              const resolve = arguments[arguments.length - 1];
-
-              const waitToMapLoadedPromise = __MAPGRAB__.getMapInterface(mapId).controller.waitToMapLoaded();
-              waitToMapLoadedPromise && waitToMapLoadedPromise.then ? waitToMapLoadedPromise.then(resolve) : resolve()
-            """,
-        mapId);
+    runner.execute(WAIT_TO_MAP_LOADED, mapId);
   }
 
   public void setView(SetViewOptions options) {
-    this.waitToMapLoaded();
-
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.setSerializationInclusion(Include.NON_NULL);
-    Map<String, Object> args = mapper.convertValue(options, Map.class);
-
-    this.executor.executeScript(
-        "console.log(arguments); __MAPGRAB__.getMapInterface(arguments[0]).controller.setView(arguments[1])",
-        mapId, args);
-
-    this.waitToMapStable();
+    this.invalidateCamera();
+    runner.execute(SET_VIEW, mapId, options);
   }
 
   public void setViewAbsolute(SetAbsoluteViewOptions options) {
-    this.waitToMapLoaded();
-
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.setSerializationInclusion(Include.NON_NULL);
-    Map<String, Object> args = mapper.convertValue(options, Map.class);
-
-    this.executor.executeScript(
-        "console.log(arguments); __MAPGRAB__.getMapInterface(arguments[0]).controller.setViewAbsolute(arguments[1])",
-        mapId, args);
-
-    this.waitToMapStable();
+    this.invalidateCamera();
+    runner.execute(SET_VIEW_ABSOLUTE, mapId, options);
   }
 
   public void fitMapToBounds(MapBounds bounds, FitBoundsOptions options) {
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.setSerializationInclusion(Include.NON_NULL);
-    Map<String, Object> optionsT = mapper.convertValue(options, Map.class);
-
-    this.executor.executeScript(
-        "__MAPGRAB__.getMapInterface(arguments[0]).controller.fitMapToBounds(arguments[1], arguments[2]) ",
-        mapId, bounds.encodeToBoundsLike(), optionsT);
-
-    this.waitToMapStable();
+    this.invalidateCamera();
+    runner.execute(FIT_MAP_TO_BOUNDS, mapId, bounds.encodeToBoundsLike(), options);
   }
 
   public void fitMapToBounds(MapBounds bounds) {
@@ -116,16 +228,8 @@ public class MapController {
   }
 
   public void fitMapToBoundingBox(BoundingBox bounds, FitBoundsOptions options) {
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.setSerializationInclusion(Include.NON_NULL);
-    Map<String, Object> boundsT = mapper.convertValue(bounds, Map.class);
-    Map<String, Object> optionsT = mapper.convertValue(options, Map.class);
-
-    this.executor.executeScript(
-        "__MAPGRAB__.getMapInterface(arguments[0]).controller.fitMapToBoundingBox(arguments[1], arguments[2]) ",
-        mapId, boundsT, optionsT);
-
-    this.waitToMapStable();
+    this.invalidateCamera();
+    runner.execute(FIT_MAP_TO_BOUNDING_BOX, mapId, bounds, options);
   }
 
   public void fitMapToBoundingBox(BoundingBox bounds) {
@@ -133,95 +237,138 @@ public class MapController {
   }
 
   public void setBackgroundColor(String color) {
-    this.executor.executeScript(
-        "__MAPGRAB__.getMapInterface(arguments[0]).controller.setBackgroundColor(arguments[1])",
-        mapId, color);
-
-    this.waitToMapStable();
+    runner.execute(SET_BACKGROUND_COLOR, mapId, color);
   }
 
   public void removeBackground() {
-    this.executor.executeScript(
-        "__MAPGRAB__.getMapInterface(arguments[0]).controller.removeBackground()",
-        mapId);
-
-    this.waitToMapStable();
+    runner.execute(REMOVE_BACKGROUND, mapId);
   }
 
   public ScreenPoint projectLngLatToScreenPoint(LngLat lngLat) {
-    this.waitToMapStable();
+    return runner.query(PROJECT_LNG_LAT, mapId, ScreenPoint.class, lngLat);
+  }
+
+  public LngLat unprojectScreenPointToLngLat(ScreenPoint point) {
+    return runner.query(UNPROJECT_SCREEN_POINT, mapId, LngLat.class, point);
+  }
 
-    ObjectMapper mapper = new ObjectMapper();
-    Map<String, Object> args = mapper.convertValue(lngLat, Map.class);
+  // Flat [lng0, lat0, lng1, lat1, ...] to flat page [x0, y0, x1, y1, ...] in one
+  // call, values are not rounded
+  public double[] projectLngLats(double[] lngLatPairs) {
+    if (lngLatPairs.length % 2 != 0) {
+      throw new IllegalArgumentException("Expected lng/lat pairs, got odd length " + lngLatPairs.length);
+    }
 
-    Object res = this.executor.executeScript(
-        "return __MAPGRAB__.getMapInterface(arguments[0]).controller.projectLngLatToScreenPoint(arguments[1])",
-        mapId, args);
+    if (lngLatPairs.length == 0) {
+      return new double[0];
+    }
 
-    return mapper.convertValue(res, ScreenPoint.class);
+    return runner.query(PROJECT_LNG_LATS, mapId, double[].class, (Object) lngLatPairs);
   }
 
-  public LngLat unprojectScreenPointToLngLat(ScreenPoint point) {
-    this.waitToMapStable();
+  public double[] unprojectScreenPoints(double[] xy) {
+    if (xy.length % 2 != 0) {
+      throw new IllegalArgumentException("Expected x/y pairs, got odd length " + xy.length);
+    }
 
-    ObjectMapper mapper = new ObjectMapper();
-    Map<String, Object> args = mapper.convertValue(point, Map.class);
+    if (xy.length == 0) {
+      return new double[0];
+    }
 
-    Object res = this.executor.executeScript(
-        "return __MAPGRAB__.getMapInterface(arguments[0]).controller.unprojectScreenPointToLngLat(arguments[1])",
-        mapId, args);
+    return runner.query(UNPROJECT_SCREEN_POINTS, mapId, double[].class, (Object) xy);
+  }
 
-    return mapper.convertValue(res, LngLat.class);
+  public CameraSnapshot getCameraSnapshot() {
+    return runner.query(GET_CAMERA_SNAPSHOT, mapId, CameraSnapshot.class);
   }
 
-  public HashMap<String, MutationState> exposeLayers(String[] layersToExpose, String[] layersToHide) {
-    this.waitToMapStable();
+  // Projects locally without a browser round-trip, snapshot is fetched once and
+  // reused until invalidateCamera() (called by view changing methods), a stale
+  // document or any command seeing the map at a newer epoch than the snapshot
+  public MapProjector projector() {
+    MapProjector projector = context.getCameraSnapshotCache().get(mapId, this.generation(), this.stableEpoch());
 
-    Object res = this.executor.executeScript(
-        "return __MAPGRAB__.getMapInterface(arguments[0]).controller.exposeLayers(arguments[1], arguments[2] || 'allOther')",
-        mapId, layersToExpose, layersToHide);
+    if (projector == null) {
+      projector = new MapProjector(this.getCameraSnapshot());
+      // Snapshot command waits for (or confirms) stability, so the epoch is the snapshot's
+      context.getCameraSnapshotCache().put(mapId, this.generation(), this.stableEpoch(), projector);
+    }
 
-    this.waitToMapStable();
+    return projector;
+  }
 
-    ObjectMapper mapper = new ObjectMapper();
-    TypeFactory factory = TypeFactory.defaultInstance();
+  private String generation() {
+    return runner.getReadinessCache().getGeneration();
+  }
 
-    return mapper.convertValue(res, factory.constructMapType(HashMap.class, String.class, MutationState.class));
+  private Long stableEpoch() {
+    return runner.getStabilityTracker().getStableEpoch(this.generation(), mapId);
   }
 
-  public HashMap<String, MutationState> exposeLayers(String[] layersToExpose) {
-    return this.exposeLayers(layersToExpose, null);
+  public void invalidateCamera() {
+    context.getCameraSnapshotCache().invalidate(mapId);
   }
 
-  public void revertExposeLayers(HashMap<String, MutationState> exposeMutationState) {
-    ObjectMapper mapper = new ObjectMapper();
-    Map<String, Object> exposeMutationStateT = mapper.convertValue(exposeMutationState, Map.class);
+  // PNG of a page rect in root window coordinates (as boundingBox(RelativeTo.ROOT_WINDOW)),
+  // taken once the map is stable and repainted
+  public byte[] screenshot(BoundingBox rect) {
+    this.waitToMapStable();
 
-    this.executor.executeScript(
-        "__MAPGRAB__.getMapInterface(arguments[0]).controller.revertExposeLayers(arguments[1])",
-        mapId, exposeMutationStateT);
+    return new ScreenshotCapturer(context).capturePng(rect);
+  }
 
-    this.waitToMapStable();
+  public BufferedImage screenshotImage(BoundingBox rect) {
+    return ScreenshotCapturer.toImage(this.screenshot(rect));
   }
 
-  private void waitToMapInterface() {
-    this.executor.executeAsyncScript("""
-        var callback = arguments[arguments.length - 1];
+  // Shows each layer alone in turn and captures the clip (current frame viewport
+  // coordinates, as boundingBox()) once repainted. The walk runs in the page, each
+  // capture is handed to onCapture (layer id, PNG) as soon as it is done and layer
+  // visibility is restored afterwards
+  public void captureLayers(String[] layerIds, BoundingBox clip, BiConsumer<String, byte[]> onCapture) {
+    String captureId = context.nextId("capture");
+    boolean done = false;
+
+    runner.execute(START_LAYER_CAPTURE, mapId, layerIds, clip, captureId);
+    // The walk keeps re-rendering the map after the start command has returned
+    runner.getStabilityTracker().markDirty(mapId);
+
+    try {
+      while (!done) {
+        LayerCaptures batch = runner.query(POLL_LAYER_CAPTURES, (String) null, LayerCaptures.class, captureId);
+        done = batch.done;
+
+        for (LayerCaptures.LayerCapture capture : batch.captures) {
+          onCapture.accept(capture.layerId, Base64.getDecoder().decode(capture.png));
+        }
 
-        if (window.__MAPGRAB__ && window.__MAPGRAB__.getMapInterface(arguments[0])) {
-          callback();
-          return;
+        if (batch.error != null) {
+          throw new JavascriptException("captureLayers: " + batch.error);
         }
+      }
+    } finally {
+      if (!done) {
+        runner.execute(ABORT_LAYER_CAPTURE, (String) null, captureId);
+      }
+    }
+  }
 
-              const h = () => {
-                if (window.__MAPGRAB__ && window.__MAPGRAB__.getMapInterface(arguments[0])) {
-                   window.removeEventListener('__MAPGRAB__::MAP_INTERFACE_INIT', h);
-                      callback();
-                }
-              }
+  public LinkedHashMap<String, byte[]> captureLayers(String[] layerIds, BoundingBox clip) {
+    LinkedHashMap<String, byte[]> captures = new LinkedHashMap<String, byte[]>();
+    this.captureLayers(layerIds, clip, captures::put);
+
+    return captures;
+  }
+
+  public HashMap<String, MutationState> exposeLayers(String[] layersToExpose, String[] layersToHide) {
+    return runner.query(EXPOSE_LAYERS, mapId, MUTATION_STATE_MAP, layersToExpose, layersToHide);
+  }
 
-              window.addEventListener('__MAPGRAB__::MAP_INTERFACE_INIT', h);
-          """, mapId);
+  public HashMap<String, MutationState> exposeLayers(String[] layersToExpose) {
+    return this.exposeLayers(layersToExpose, null);
   }
 
+  public void revertExposeLayers(HashMap<String, MutationState> exposeMutationState) {
+    runner.execute(REVERT_EXPOSE_LAYERS, mapId, exposeMutationState);
+  }
 }
@@ -0,0 +1,133 @@
+package com.mapgrab.selenium;
+
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+
+import org.openqa.selenium.WebDriver;
+
+import com.mapgrab.selenium.controller.CameraSnapshot;
+import com.mapgrab.selenium.controller.FitBoundsOptions;
+import com.mapgrab.selenium.controller.LngLat;
+import com.mapgrab.selenium.controller.MapBounds;
+import com.mapgrab.selenium.controller.MapProjector;
+import com.mapgrab.selenium.controller.MutationState;
+import com.mapgrab.selenium.controller.ScreenPoint;
+import com.mapgrab.selenium.controller.SetAbsoluteViewOptions;
+import com.mapgrab.selenium.controller.SetViewOptions;
+
+// Non blocking MapController, calls run on MapGrabContext async executor and
+// cancelling a future aborts the pending browser side wait
+public class MapControllerAsync {
+  private final MapController controller;
+  private final MapGrabContext context;
+
+  public MapControllerAsync(WebDriver driver, String mapId) {
+    this(new MapController(driver, mapId));
+  }
+
+  public MapControllerAsync(MapGrabContext context, String mapId) {
+    this(new MapController(context, mapId));
+  }
+
+  public MapControllerAsync(MapController controller) {
+    this.controller = controller;
+    this.context = controller.context;
+  }
+
+  public MapController getController() {
+    return controller;
+  }
+
+  public CompletableFuture<Void> waitToMapStable() {
+    return this.run(controller::waitToMapStable);
+  }
+
+  public CompletableFuture<Void> waitToMapLoaded() {
+    return this.run(controller::waitToMapLoaded);
+  }
+
+  public CompletableFuture<Void> enableInspector() {
+    return this.run(controller::enableInspector);
+  }
+
+  public CompletableFuture<Void> disableInspector() {
+    return this.run(controller::disableInspector);
+  }
+
+  public CompletableFuture<Void> setView(SetViewOptions options) {
+    return this.run(() -> controller.setView(options));
+  }
+
+  public CompletableFuture<Void> setViewAbsolute(SetAbsoluteViewOptions options) {
+    return this.run(() -> controller.setViewAbsolute(options));
+  }
+
+  public CompletableFuture<Void> fitMapToBounds(MapBounds bounds, FitBoundsOptions options) {
+    return this.run(() -> controller.fitMapToBounds(bounds, options));
+  }
+
+  public CompletableFuture<Void> fitMapToBounds(MapBounds bounds) {
+    return this.fitMapToBounds(bounds, null);
+  }
+
+  public CompletableFuture<Void> fitMapToBoundingBox(BoundingBox bounds, FitBoundsOptions options) {
+    return this.run(() -> controller.fitMapToBoundingBox(bounds, options));
+  }
+
+  public CompletableFuture<Void> fitMapToBoundingBox(BoundingBox bounds) {
+    return this.fitMapToBoundingBox(bounds, null);
+  }
+
+  public CompletableFuture<Void> setBackgroundColor(String color) {
+    return this.run(() -> controller.setBackgroundColor(color));
+  }
+
+  public CompletableFuture<Void> removeBackground() {
+    return this.run(controller::removeBackground);
+  }
+
+  public CompletableFuture<ScreenPoint> projectLngLatToScreenPoint(LngLat lngLat) {
+    return context.supplyAsync(() -> controller.projectLngLatToScreenPoint(lngLat));
+  }
+
+  public CompletableFuture<LngLat> unprojectScreenPointToLngLat(ScreenPoint point) {
+    return context.supplyAsync(() -> controller.unprojectScreenPointToLngLat(point));
+  }
+
+  public CompletableFuture<double[]> projectLngLats(double[] lngLatPairs) {
+    return context.supplyAsync(() -> controller.projectLngLats(lngLatPairs));
+  }
+
+  public CompletableFuture<double[]> unprojectScreenPoints(double[] xy) {
+    return context.supplyAsync(() -> controller.unprojectScreenPoints(xy));
+  }
+
+  public CompletableFuture<CameraSnapshot> getCameraSnapshot() {
+    return context.supplyAsync(controller::getCameraSnapshot);
+  }
+
+  public CompletableFuture<MapProjector> projector() {
+    return context.supplyAsync(controller::projector);
+  }
+
+  public CompletableFuture<HashMap<String, MutationState>> exposeLayers(String[] layersToExpose,
+      String[] layersToHide) {
+    return context.supplyAsync(() -> controller.exposeLayers(layersToExpose, layersToHide));
+  }
+
+  public CompletableFuture<HashMap<String, MutationState>> exposeLayers(String[] layersToExpose) {
+    return this.exposeLayers(layersToExpose, null);
+  }
+
+  public CompletableFuture<Void> revertExposeLayers(HashMap<String, MutationState> exposeMutationState) {
+    return this.run(() -> controller.revertExposeLayers(exposeMutationState));
+  }
+
+  private CompletableFuture<Void> run(Runnable action) {
+    return context.supplyAsync(() -> {
+      action.run();
+
+      return null;
+    });
+  }
+}
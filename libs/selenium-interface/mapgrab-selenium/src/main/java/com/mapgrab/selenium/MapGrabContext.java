@@ -0,0 +1,230 @@
+package com.mapgrab.selenium;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import com.mapgrab.selenium.codec.MapGrabCodec;
+import com.mapgrab.selenium.codec.WireFormat;
+import com.mapgrab.selenium.command.CancellationScope;
+import com.mapgrab.selenium.command.CommandRunner;
+import com.mapgrab.selenium.command.ExecutionMode;
+import com.mapgrab.selenium.metrics.MapGrabListener;
+import com.mapgrab.selenium.metrics.MapGrabMetrics;
+
+public class MapGrabContext {
+  private static final Map<WebDriver, MapGrabContext> contexts = Collections.synchronizedMap(new WeakHashMap<>());
+  private static final ExecutorService defaultAsyncExecutor = createDefaultAsyncExecutor();
+
+  // Weak so the registry entry does not keep its own key alive
+  private final WeakReference<WebDriver> driver;
+  private JavascriptExecutor executor;
+  private MapGrabCodec codec = MapGrabCodec.shared();
+  private WireFormat wireFormat = WireFormat.JSON;
+  private ExecutionMode executionMode = ExecutionMode.FUSED;
+  // Kept below Selenium default 30s script timeout so MapGrabTimeoutError wins
+  private Duration timeout = Duration.ofSeconds(20);
+  private boolean lazyProperties = false;
+  private Executor asyncExecutor = defaultAsyncExecutor;
+  // Async commands return to the driver at least this often to check for cancellation
+  private Duration asyncSlice = Duration.ofMillis(500);
+  // When set, concurrent commands arriving within the window share one browser call
+  private Duration coalesceWindow;
+  private final CommandRunner commandRunner;
+  private final QueryResultCache queryResultCache = new QueryResultCache(256);
+  private final CameraSnapshotCache cameraSnapshotCache = new CameraSnapshotCache();
+  private final MapGrabMetrics metrics = new MapGrabMetrics();
+  // Ids of in-page state (layer captures), sequential so recordings replay
+  private final AtomicLong sequence = new AtomicLong();
+  // Held while a script runs on the session, the WebDriver session is not thread safe.
+  // A lock rather than a monitor, async commands wait on it from virtual threads
+  private final ReentrantLock sessionLock = new ReentrantLock();
+
+  public MapGrabContext(WebDriver driver) {
+    this.driver = new WeakReference<WebDriver>(driver);
+    this.commandRunner = new CommandRunner(this);
+  }
+
+  public static MapGrabContext of(WebDriver driver) {
+    return contexts.computeIfAbsent(driver, MapGrabContext::new);
+  }
+
+  public static void release(WebDriver driver) {
+    contexts.remove(driver);
+  }
+
+  public WebDriver getDriver() {
+    return driver.get();
+  }
+
+  public JavascriptExecutor getExecutor() {
+    return executor != null ? executor : (JavascriptExecutor) driver.get();
+  }
+
+  public MapGrabContext setExecutor(JavascriptExecutor executor) {
+    this.executor = executor;
+
+    return this;
+  }
+
+  public ReentrantLock getSessionLock() {
+    return sessionLock;
+  }
+
+  public MapGrabCodec getCodec() {
+    return codec;
+  }
+
+  public MapGrabContext setCodec(MapGrabCodec codec) {
+    this.codec = codec;
+
+    return this;
+  }
+
+  public WireFormat getWireFormat() {
+    return wireFormat;
+  }
+
+  public MapGrabContext setWireFormat(WireFormat wireFormat) {
+    this.wireFormat = wireFormat;
+
+    return this;
+  }
+
+  public ExecutionMode getExecutionMode() {
+    return executionMode;
+  }
+
+  public MapGrabContext setExecutionMode(ExecutionMode executionMode) {
+    this.executionMode = executionMode;
+
+    return this;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public MapGrabContext setTimeout(Duration timeout) {
+    this.timeout = timeout;
+
+    return this;
+  }
+
+  public boolean isLazyProperties() {
+    return lazyProperties;
+  }
+
+  // Locator results come without properties, SingleResult.getProperties() fetches
+  // them in one batched call for the results that are actually inspected
+  public MapGrabContext setLazyProperties(boolean lazyProperties) {
+    this.lazyProperties = lazyProperties;
+
+    return this;
+  }
+
+  public Executor getAsyncExecutor() {
+    return asyncExecutor;
+  }
+
+  public MapGrabContext setAsyncExecutor(Executor asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+
+    return this;
+  }
+
+  public Duration getAsyncSlice() {
+    return asyncSlice;
+  }
+
+  public MapGrabContext setAsyncSlice(Duration asyncSlice) {
+    this.asyncSlice = asyncSlice;
+
+    return this;
+  }
+
+  public Duration getCoalesceWindow() {
+    return coalesceWindow;
+  }
+
+  public MapGrabContext setCoalesceWindow(Duration coalesceWindow) {
+    this.coalesceWindow = coalesceWindow;
+
+    return this;
+  }
+
+  // Runs blocking MapGrab calls on the async executor, cancelling the returned
+  // future aborts the browser side wait of the command in flight
+  public <T> CompletableFuture<T> supplyAsync(Callable<T> task) {
+    CompletableFuture<T> future = new CompletableFuture<T>();
+
+    asyncExecutor.execute(() -> {
+      if (future.isDone()) {
+        return;
+      }
+
+      try {
+        future.complete(CancellationScope.run(future, task));
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    });
+
+    return future;
+  }
+
+  public CommandRunner getCommandRunner() {
+    return commandRunner;
+  }
+
+  public QueryResultCache getQueryResultCache() {
+    return queryResultCache;
+  }
+
+  public CameraSnapshotCache getCameraSnapshotCache() {
+    return cameraSnapshotCache;
+  }
+
+  public MapGrabMetrics getMetrics() {
+    return metrics;
+  }
+
+  public MapGrabContext addListener(MapGrabListener listener) {
+    metrics.addListener(listener);
+
+    return this;
+  }
+
+  String nextId(String prefix) {
+    return prefix + "-" + sequence.incrementAndGet();
+  }
+
+  // Virtual threads when the runtime has them (Java 21+), the library itself targets 17
+  private static ExecutorService createDefaultAsyncExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      AtomicInteger threadCount = new AtomicInteger();
+
+      return Executors.newCachedThreadPool((runnable) -> {
+        Thread thread = new Thread(runnable, "mapgrab-async-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+
+        return thread;
+      });
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.mapgrab.selenium;
+
+import java.time.Duration;
+
+import org.openqa.selenium.TimeoutException;
+
+public class MapGrabTimeoutError extends TimeoutException {
+  private final String operation;
+  private final String phase;
+  private final Duration timeout;
+  private final Duration waited;
+
+  public MapGrabTimeoutError(String operation, String phase, Duration timeout, Duration waited) {
+    super("Timeout " + timeout.toMillis() + "ms exceeded in " + operation + " while waiting for " + phase
+        + " (waited " + waited.toMillis() + "ms)");
+    this.operation = operation;
+    this.phase = phase;
+    this.timeout = timeout;
+    this.waited = waited;
+  }
+
+  public String getOperation() {
+    return operation;
+  }
+
+  public String getPhase() {
+    return phase;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public Duration getWaited() {
+    return waited;
+  }
+}
@@ -1,36 +1,105 @@
 package com.mapgrab.selenium;
 
+import java.awt.image.BufferedImage;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.function.Function;
 
 import org.openqa.selenium.By;
 import org.openqa.selenium.Dimension;
-import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mapgrab.selenium.codec.WireFormat;
+import com.mapgrab.selenium.command.CommandRunner;
+import com.mapgrab.selenium.command.MapGrabCommand;
 import com.mapgrab.selenium.controller.RelativeTo;
 import com.mapgrab.selenium.controller.ScreenPoint;
+import com.mapgrab.selenium.metrics.Operation;
+import com.mapgrab.selenium.screenshot.BaselineStore;
+import com.mapgrab.selenium.screenshot.ImageDiffResult;
+import com.mapgrab.selenium.screenshot.PngDecoder;
+import com.mapgrab.selenium.screenshot.ScreenshotCapturer;
+import com.mapgrab.selenium.spatial.ResultIndex;
 
 public class MapLocator {
+  private static final MapGrabCommand QUERY = MapGrabCommand.forLocator("query")
+      .awaitStable()
+      .perform("""
+          new Promise((resolve) => {
+            const knownEpoch = args.params[0];
+            const packed = args.params[1];
+            const lazy = args.params[2];
+            // Handle of the cached lazy results, their properties may have been evicted since
+            const knownHandle = args.params[3];
+            let attempts = 0;
+
+            const tryResolve = () => {
+              attempts++;
+              const epoch = __MAPGRAB__.renderEpoch(args.selector);
+
+              if (knownEpoch && epoch === knownEpoch && (!knownHandle || __MAPGRAB__.retainProperties(knownHandle))) {
+                resolve({ epoch, attempts, notModified: true });
+                return true;
+              }
+
+              if (packed) {
+                const result = __MAPGRAB__.queryPacked(args.selector, lazy);
+
+                if (result.count > 0) {
+                  resolve({ epoch, attempts, packed: result });
+                  return true;
+                }
+
+                return false;
+              }
+
+              const data = lazy ? __MAPGRAB__.queryLazy(args.selector) : __MAPGRAB__.query(args.selector);
+
+              if (data.length > 0) {
+                resolve({ epoch, attempts, data });
+                return true;
+              }
+
+              return false;
+            };
+
+            if (tryResolve()) {
+              return;
+            }
+
+            // Re-check only when one of the locator maps renders, goes idle or receives data
+            const unsubscribe = __MAPGRAB__.onMapChange(args.selector, () => tryResolve() && unsubscribe());
+            signal.addEventListener('abort', unsubscribe);
+          })""");
+
+  private static final MapGrabCommand EXPLAIN = MapGrabCommand.forLocator("explain")
+      .awaitStable()
+      .perform("__MAPGRAB__.explain(args.selector)");
+
+  private static final MapGrabCommand FRAME_ABSOLUTE_POSITION = MapGrabCommand.forPage("frameAbsolutePosition")
+      .perform("__MAPGRAB__.utils.frameAbsolutePosition(window)");
+
   private final WebDriver driver;
   private final String selector;
-  private final JavascriptExecutor executor;
-  private Function<SingleResult, String> _merge;
+  private final MapGrabContext context;
+  private final CommandRunner runner;
+  private ResultMerger _merge;
   private Integer index = null;
+  private Duration timeout;
 
   public MapLocator(WebDriver driver, String selector) {
-    this.driver = driver;
+    this(MapGrabContext.of(driver), selector);
+  }
+
+  public MapLocator(MapGrabContext context, String selector) {
+    this.driver = context.getDriver();
     this.selector = selector;
-    this.executor = (JavascriptExecutor) driver;
+    this.context = context;
+    this.runner = context.getCommandRunner();
   }
 
   public MapLocator(WebDriver driver, String selector, int index) {
@@ -38,10 +107,29 @@ public class MapLocator {
     this.index = index;
   }
 
-  public MapLocator(WebDriver driver, String selector, int index, Function<SingleResult, String> merge) {
+  public MapLocator(WebDriver driver, String selector, int index, Function<SingleResult, ?> merge) {
     this(driver, selector);
     this.index = index;
-    this._merge = merge;
+    this.merge(merge);
+  }
+
+  public String getSelector() {
+    return selector;
+  }
+
+  MapGrabContext getContext() {
+    return context;
+  }
+
+  // Null unless set through timeout(), commands then use the context timeout
+  Duration getTimeout() {
+    return timeout;
+  }
+
+  public MapLocator timeout(Duration timeout) {
+    this.timeout = timeout;
+
+    return this;
   }
 
   public MapLocator first() {
@@ -59,31 +147,62 @@ public class MapLocator {
   }
 
   public MapLocator merge(String property) {
-    this._merge = (SingleResult x) -> x.properties.get(property);
+    return this.merge((SingleResult x) -> x.getProperties().get(property));
+  }
 
-    return this;
+  // Composite key, results are merged when all listed properties are equal
+  public MapLocator merge(String... properties) {
+    return this.merge((SingleResult x) -> {
+      Map<String, String> values = x.getProperties();
+
+      return Arrays.asList(Arrays.stream(properties).map(values::get).toArray());
+    });
   }
 
-  public MapLocator merge(Function<SingleResult, String> func) {
-    this._merge = func;
+  // Key may be any value with equals/hashCode (String, List, record, ...)
+  public MapLocator merge(Function<SingleResult, ?> func) {
+    this._merge = func != null ? new ResultMerger(func) : null;
 
     return this;
   }
 
   public void click() throws ToManyElementsError, ElementNotExisisError {
-    this.prepareMouseAction().click().perform();
+    this.perform("click", this.prepareMouseAction().click());
+    // Clicks may pan/zoom the map or change its style through app handlers
+    context.getCameraSnapshotCache().invalidateAll();
+    runner.getStabilityTracker().markAllDirty();
   }
 
   public void contextClick() throws ToManyElementsError, ElementNotExisisError {
-    this.prepareMouseAction().contextClick().perform();
+    this.perform("contextClick", this.prepareMouseAction().contextClick());
+    context.getCameraSnapshotCache().invalidateAll();
+    runner.getStabilityTracker().markAllDirty();
   }
 
   public void doubleClick() throws ToManyElementsError, ElementNotExisisError {
-    this.prepareMouseAction().doubleClick().perform();
+    this.perform("doubleClick", this.prepareMouseAction().doubleClick());
+    context.getCameraSnapshotCache().invalidateAll();
+    runner.getStabilityTracker().markAllDirty();
   }
 
   public void hover() throws ToManyElementsError, ElementNotExisisError {
-    this.prepareMouseAction().perform();
+    this.perform("hover", this.prepareMouseAction());
+  }
+
+  private void perform(String name, Actions actions) {
+    Operation operation = context.getMetrics().start(name, selector);
+    long startedAt = System.nanoTime();
+
+    try {
+      actions.perform();
+      operation.span("MOUSE_ACTION", startedAt, System.nanoTime() - startedAt);
+    } catch (RuntimeException e) {
+      operation.error(e);
+
+      throw e;
+    } finally {
+      operation.finish();
+    }
   }
 
   public void fitMap() throws ToManyElementsError, ElementNotExisisError {
@@ -91,7 +210,7 @@ public class MapLocator {
 
     // String mapId = element.getFeature();
 
-    new MapController(driver, "mainMap").fitMapToBoundingBox(element.getDisplay());
+    new MapController(context, "mainMap").fitMapToBoundingBox(element.getDisplay());
   }
 
   public Actions prepareMouseAction() throws ElementNotExisisError, ToManyElementsError {
@@ -120,16 +239,13 @@ public class MapLocator {
 
   public BoundingBox boundingBox(RelativeTo relativeTo) throws ToManyElementsError, ElementNotExisisError {
     Result element = this.getElement();
-    BoundingBox bbox = element.getDisplay();
+    // Copy, the display rect belongs to the cached query result
+    BoundingBox bbox = element.getDisplay().copy();
 
     if (relativeTo == RelativeTo.ROOT_WINDOW) {
-      LinkedHashMap<String, Long> result = (LinkedHashMap<String, Long>) this.executor
-          .executeScript("return __MAPGRAB__.utils.frameAbsolutePosition(window)");
+      ScreenPoint framePosition = runner.query(FRAME_ABSOLUTE_POSITION, (String) null, ScreenPoint.class);
 
-      int x = result.get("x").intValue();
-      int y = result.get("y").intValue();
-
-      bbox.applyOffset(x, y);
+      bbox.applyOffset(framePosition.x, framePosition.y);
     }
 
     return bbox;
@@ -141,6 +257,37 @@ public class MapLocator {
     return elements.size();
   }
 
+  // Runs the query once the maps are stable and reports resolved maps and layers,
+  // feature counts and time per stage instead of the results
+  public QueryExplanation explain() {
+    return runner.call(EXPLAIN, selector).timeout(timeout).query(QueryExplanation.class);
+  }
+
+  // PNG of the locator rect only, captured after the next repaint
+  public byte[] screenshot() throws ToManyElementsError, ElementNotExisisError {
+    return new ScreenshotCapturer(context).capturePng(this.boundingBox(RelativeTo.ROOT_WINDOW));
+  }
+
+  public BufferedImage screenshotImage() throws ToManyElementsError, ElementNotExisisError {
+    return ScreenshotCapturer.toImage(this.screenshot());
+  }
+
+  // Decodes into the decoder's reused raster, for repeated captures of same size
+  public BufferedImage screenshotImage(PngDecoder decoder) throws ToManyElementsError, ElementNotExisisError {
+    return decoder.decode(this.screenshot());
+  }
+
+  // Compares the locator screenshot with the named baseline, see BaselineStore.verify
+  public ImageDiffResult compareToBaseline(BaselineStore store, String name)
+      throws ToManyElementsError, ElementNotExisisError {
+    return store.verify(name, this.screenshot());
+  }
+
+  // Fetches the results once for local point, rect, overlap and nearest queries
+  public ResultIndex<Result> spatialIndex() {
+    return ResultIndex.<Result>of(this.getElements());
+  }
+
   public Result getElement() throws ElementNotExisisError, ToManyElementsError {
     ArrayList<? extends Result> elements = this.getElements();
 
@@ -156,109 +303,57 @@ public class MapLocator {
   }
 
   private ArrayList<? extends Result> getElements() {
-    this.waitToMapStable();
-
-    Object elements = this.executor.executeAsyncScript("""
-         const resolve = arguments[arguments.length - 1];
-         const locator = arguments[0];
-         const data = __MAPGRAB__.query(locator);
-
-         if (data.length > 0) {
-           resolve(data);
-         }
-
-         const interval = setInterval(() => {
-           const data = __MAPGRAB__.query(locator);
+    QueryResultCache cache = context.getQueryResultCache();
+    WireFormat wireFormat = context.getWireFormat();
+    boolean packed = wireFormat == WireFormat.PACKED;
+    boolean lazy = context.isLazyProperties();
+    String knownEpoch = cache.getEpoch(selector, wireFormat, lazy);
+    String knownHandle = lazy ? cache.getHandle(selector, wireFormat, lazy) : null;
+
+    QueryResponse response = runner.call(QUERY, selector, knownEpoch, packed, lazy, knownHandle).timeout(timeout)
+        .query(QueryResponse.class);
+    ArrayList<SingleResult> objects = response.notModified ? cache.get(selector, wireFormat, lazy, response.epoch) : null;
+
+    if (objects == null) {
+      if (response.notModified) {
+        // Entry evicted in the meantime, ask again without epoch
+        response = runner.call(QUERY, selector, null, packed, lazy, null).timeout(timeout)
+            .query(QueryResponse.class);
+      }
 
-           if (data.length > 0) {
-             clearInterval(interval);
-             resolve(data);
-           }
-         }, 100);
-        """, this.selector);
+      objects = response.getResults();
+      cache.put(selector, wireFormat, lazy, response.epoch, objects);
+    }
 
-    ObjectMapper mapper = new ObjectMapper();
-    ArrayList<SingleResult> objects = mapper.convertValue(elements, new TypeReference<ArrayList<SingleResult>>() {
-    });
+    return this.processResults(objects);
+  }
 
+  ArrayList<? extends Result> processResults(ArrayList<SingleResult> objects) {
     objects.removeIf((x) -> !x.isVisible);
 
     ArrayList<? extends Result> res = objects;
 
     if (this._merge != null) {
-      res = this.mergeResults(objects);
-    }
-
-    if (res.size() > 1 && this.index != null) {
-      Result element = this.index < 0 ? res.get(res.size() - 1 + this.index) : res.get(this.index);
-
-      if (element != null) {
-        ArrayList<Result> singleRes = new ArrayList<Result>();
-        // res.add(element);
-        singleRes.add(element);
-
-        return singleRes;
-      }
+      // Merge keys may read properties of every visible feature
+      PropertyLoader.attach(runner, objects);
+      res = this._merge.merge(objects);
     }
 
-    return res;
-  }
-
-  private void waitToMapStable() {
-    this.waitToMapInterface();
-
-    this.executor.executeAsyncScript("""
-        __MAPGRAB__.waitMapStableForLocator(arguments[0]).then(arguments[arguments.length - 1]);
-        """, this.selector);
-  }
-
-  private void waitToMapInterface() {
-    this.executor.executeAsyncScript("""
-        var callback = arguments[arguments.length - 1];
-              if (window.__MAPGRAB__) {
-                callback();
-                return;
-              }
-
-              const h = () => {
-                window.removeEventListener('__MAPGRAB__::INTERFACE_INIT', h);
-                callback();
-              }
-
-              window.addEventListener('__MAPGRAB__::INTERFACE_INIT', h);
-          """);
-  }
-
-  private ArrayList<Result> mergeResults(ArrayList<SingleResult> results) {
-    Map<String, Result> groupedFeatures = new HashMap<String, Result>();
-
-    results.forEach(result -> {
-      String key = this._merge.apply(result);
+    if (this.index != null) {
+      int position = this.index < 0 ? res.size() + this.index : this.index;
+      ArrayList<Result> singleRes = new ArrayList<Result>();
 
-      if (groupedFeatures.get(key) != null) {
-        Result resultA = groupedFeatures.get(key);
-        groupedFeatures.replace(key, this.mergeResult(resultA, result));
-      } else {
-        groupedFeatures.put(key, result);
+      // Out of range leaves no element, getElement() then reports it as not existing
+      if (position >= 0 && position < res.size()) {
+        singleRes.add(res.get(position));
+        PropertyLoader.attach(runner, singleRes);
       }
-    });
-
-    return new ArrayList<Result>(groupedFeatures.values());
-  }
-
-  private Result mergeResult(Result resultA, Result resultB) {
-    int minX = Math.min(resultA.getDisplay().x, resultB.getDisplay().x);
-    int minY = Math.min(resultA.getDisplay().y, resultB.getDisplay().y);
-    int maxX = Math.max(resultA.getDisplay().right, resultB.getDisplay().right);
-    int maxY = Math.max(resultA.getDisplay().bottom, resultB.getDisplay().bottom);
-
-    List<ScreenPoint> screenPoints = resultA.getInteractionPoints();
-    screenPoints.addAll(resultB.getInteractionPoints());
 
-    BoundingBox mapBounds = new BoundingBox(minX, minY, minX - maxX, minY - maxY);
+      return singleRes;
+    }
 
-    List<SingleResult> features = Collections.emptyList();
+    PropertyLoader.attach(runner, res);
 
-    return new MergedResult(screenPoints, features, mapBounds);
+    return res;
   }
 }
@@ -0,0 +1,127 @@
+package com.mapgrab.selenium;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.openqa.selenium.WebDriver;
+
+import com.mapgrab.selenium.controller.RelativeTo;
+
+// Non blocking MapLocator, calls run on MapGrabContext async executor and
+// cancelling a future aborts the pending browser side wait
+public class MapLocatorAsync {
+  private final MapLocator locator;
+  private final MapGrabContext context;
+
+  public MapLocatorAsync(WebDriver driver, String selector) {
+    this(new MapLocator(driver, selector));
+  }
+
+  public MapLocatorAsync(MapGrabContext context, String selector) {
+    this(new MapLocator(context, selector));
+  }
+
+  public MapLocatorAsync(MapLocator locator) {
+    this.locator = locator;
+    this.context = locator.getContext();
+  }
+
+  public MapLocator getLocator() {
+    return locator;
+  }
+
+  public MapLocatorAsync timeout(Duration timeout) {
+    locator.timeout(timeout);
+
+    return this;
+  }
+
+  public MapLocatorAsync first() {
+    locator.first();
+
+    return this;
+  }
+
+  public MapLocatorAsync last() {
+    locator.last();
+
+    return this;
+  }
+
+  public MapLocatorAsync nth(int index) {
+    locator.nth(index);
+
+    return this;
+  }
+
+  public MapLocatorAsync merge(String property) {
+    locator.merge(property);
+
+    return this;
+  }
+
+  public MapLocatorAsync merge(String... properties) {
+    locator.merge(properties);
+
+    return this;
+  }
+
+  public MapLocatorAsync merge(Function<SingleResult, ?> func) {
+    locator.merge(func);
+
+    return this;
+  }
+
+  public CompletableFuture<Void> click() {
+    return this.run(locator::click);
+  }
+
+  public CompletableFuture<Void> contextClick() {
+    return this.run(locator::contextClick);
+  }
+
+  public CompletableFuture<Void> doubleClick() {
+    return this.run(locator::doubleClick);
+  }
+
+  public CompletableFuture<Void> hover() {
+    return this.run(locator::hover);
+  }
+
+  public CompletableFuture<Void> fitMap() {
+    return this.run(locator::fitMap);
+  }
+
+  public CompletableFuture<BoundingBox> boundingBox() {
+    return context.supplyAsync(() -> locator.boundingBox());
+  }
+
+  public CompletableFuture<BoundingBox> boundingBox(RelativeTo relativeTo) {
+    return context.supplyAsync(() -> locator.boundingBox(relativeTo));
+  }
+
+  public CompletableFuture<byte[]> screenshot() {
+    return context.supplyAsync(() -> locator.screenshot());
+  }
+
+  public CompletableFuture<Integer> count() {
+    return context.supplyAsync(() -> locator.count());
+  }
+
+  public CompletableFuture<Result> getElement() {
+    return context.supplyAsync(() -> locator.getElement());
+  }
+
+  private CompletableFuture<Void> run(Action action) {
+    return context.supplyAsync(() -> {
+      action.run();
+
+      return null;
+    });
+  }
+
+  private interface Action {
+    void run() throws Exception;
+  }
+}
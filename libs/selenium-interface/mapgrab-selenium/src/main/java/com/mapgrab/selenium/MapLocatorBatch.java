@@ -0,0 +1,108 @@
+package com.mapgrab.selenium;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+import org.openqa.selenium.WebDriver;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.mapgrab.selenium.codec.MapGrabCodec;
+import com.mapgrab.selenium.codec.WireFormat;
+import com.mapgrab.selenium.command.MapGrabCommand;
+
+public class MapLocatorBatch {
+  private static final JavaType PACKED_RESULTS = MapGrabCodec.shared()
+      .constructType(new TypeReference<ArrayList<PackedQueryResult>>() {
+      });
+
+  private static final JavaType SINGLE_RESULT_LISTS = MapGrabCodec.shared()
+      .constructType(new TypeReference<ArrayList<ArrayList<SingleResult>>>() {
+      });
+
+  // Unlike MapLocator the batch does not poll for non empty results, an empty
+  // list is a valid answer for count/visibility checks
+  private static final MapGrabCommand QUERY_ALL = MapGrabCommand.forLocators("queryAll")
+      .awaitStable()
+      .perform("""
+          args.selectors.map((selector) =>
+            args.params[0] ? __MAPGRAB__.queryLazy(selector) : __MAPGRAB__.query(selector))""");
+
+  private static final MapGrabCommand QUERY_ALL_PACKED = MapGrabCommand.forLocators("queryAllPacked")
+      .awaitStable()
+      .perform("args.selectors.map((selector) => __MAPGRAB__.queryPacked(selector, args.params[0]))");
+
+  private final MapGrabContext context;
+  private final LinkedHashMap<String, MapLocator> locators = new LinkedHashMap<String, MapLocator>();
+
+  public MapLocatorBatch(WebDriver driver) {
+    this(MapGrabContext.of(driver));
+  }
+
+  public MapLocatorBatch(MapGrabContext context) {
+    this.context = context;
+  }
+
+  public MapLocatorBatch add(String selector) {
+    return this.add(new MapLocator(context, selector));
+  }
+
+  public MapLocatorBatch add(MapLocator locator) {
+    if (locators.containsKey(locator.getSelector())) {
+      throw new IllegalArgumentException("Selector already added to batch: " + locator.getSelector());
+    }
+
+    locators.put(locator.getSelector(), locator);
+
+    return this;
+  }
+
+  public int size() {
+    return locators.size();
+  }
+
+  public LinkedHashMap<String, ArrayList<? extends Result>> resolve() {
+    LinkedHashMap<String, ArrayList<? extends Result>> results = new LinkedHashMap<String, ArrayList<? extends Result>>();
+
+    if (locators.isEmpty()) {
+      return results;
+    }
+
+    String[] selectors = locators.keySet().toArray(new String[0]);
+    Duration timeout = this.timeout();
+    ArrayList<ArrayList<SingleResult>> queryResults;
+
+    if (context.getWireFormat() == WireFormat.PACKED) {
+      ArrayList<PackedQueryResult> packedResults = context.getCommandRunner()
+          .call(QUERY_ALL_PACKED, selectors, context.isLazyProperties()).timeout(timeout).query(PACKED_RESULTS);
+
+      queryResults = new ArrayList<ArrayList<SingleResult>>(packedResults.size());
+      packedResults.forEach((packed) -> queryResults.add(packed.decode()));
+    } else {
+      queryResults = context.getCommandRunner().call(QUERY_ALL, selectors, context.isLazyProperties())
+          .timeout(timeout).query(SINGLE_RESULT_LISTS);
+    }
+
+    for (int i = 0; i < selectors.length; i++) {
+      MapLocator locator = locators.get(selectors[i]);
+
+      results.put(selectors[i], locator.processResults(queryResults.get(i)));
+    }
+
+    return results;
+  }
+
+  // One command for all locators, so the longest timeout set on them (null = context timeout)
+  private Duration timeout() {
+    Duration timeout = null;
+
+    for (MapLocator locator : locators.values()) {
+      if (locator.getTimeout() != null && (timeout == null || locator.getTimeout().compareTo(timeout) > 0)) {
+        timeout = locator.getTimeout();
+      }
+    }
+
+    return timeout;
+  }
+}
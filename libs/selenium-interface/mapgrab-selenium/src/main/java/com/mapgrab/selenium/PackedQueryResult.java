@@ -0,0 +1,110 @@
+package com.mapgrab.selenium;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+
+import com.mapgrab.selenium.controller.ScreenPoint;
+
+// Columnar query result sent with WireFormat.PACKED, see
+// PackedQueryResultInterface in map-interface-types for the layout
+public class PackedQueryResult {
+  private static final int FEATURE_STRIDE = 9;
+  private static final int RECT_STRIDE = 6;
+
+  public int count;
+  // Set for lazy queries, properties column is empty and features get handles
+  public String generation;
+  public Integer queryId;
+  public String[] strings;
+  public String features;
+  public String properties;
+  public String points;
+  public String rects;
+
+  public ArrayList<SingleResult> decode() {
+    int[] featureColumn = decodeInts(features);
+    int[] propertyColumn = decodeInts(properties);
+    double[] pointColumn = decodeDoubles(points);
+    double[] rectColumn = decodeDoubles(rects);
+
+    if (featureColumn.length != count * FEATURE_STRIDE || rectColumn.length != count * RECT_STRIDE) {
+      throw new IllegalStateException("Packed query result does not match feature count " + count);
+    }
+
+    ArrayList<SingleResult> results = new ArrayList<SingleResult>(count);
+
+    for (int i = 0; i < count; i++) {
+      int f = i * FEATURE_STRIDE;
+      int r = i * RECT_STRIDE;
+      SingleResult result = new SingleResult();
+
+      result.featureId = this.string(featureColumn[f]);
+      result.sourceId = this.string(featureColumn[f + 1]);
+      result.layerId = this.string(featureColumn[f + 2]);
+      result.mapId = this.string(featureColumn[f + 3]);
+      result.isVisible = featureColumn[f + 4] == 1;
+
+      if (queryId != null) {
+        result.handle = generation + ":" + queryId + ":" + i;
+      } else {
+        int propertyOffset = featureColumn[f + 5] * 2;
+        int propertyCount = featureColumn[f + 6];
+        result.properties = new LinkedHashMap<String, String>(Math.max(16, propertyCount * 2));
+
+        for (int p = 0; p < propertyCount; p++) {
+          result.properties.put(this.string(propertyColumn[propertyOffset + p * 2]),
+              this.string(propertyColumn[propertyOffset + p * 2 + 1]));
+        }
+      }
+
+      int pointOffset = featureColumn[f + 7] * 2;
+      int pointCount = featureColumn[f + 8];
+      result.interactionPoints = new ArrayList<ScreenPoint>(pointCount);
+
+      // Casts truncate like Jackson float to int coercion on the JSON path
+      for (int p = 0; p < pointCount; p++) {
+        result.interactionPoints.add(new ScreenPoint((int) pointColumn[pointOffset + p * 2],
+            (int) pointColumn[pointOffset + p * 2 + 1]));
+      }
+
+      result.rect = new BoundingBox();
+      result.rect.x = (int) rectColumn[r];
+      result.rect.y = (int) rectColumn[r + 1];
+      result.rect.width = (int) rectColumn[r + 2];
+      result.rect.height = (int) rectColumn[r + 3];
+      result.rect.right = (int) rectColumn[r + 4];
+      result.rect.bottom = (int) rectColumn[r + 5];
+
+      results.add(result);
+    }
+
+    return results;
+  }
+
+  private String string(int index) {
+    return index < 0 ? null : strings[index];
+  }
+
+  private static ByteBuffer buffer(String base64) {
+    return ByteBuffer.wrap(Base64.getDecoder().decode(base64)).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static int[] decodeInts(String base64) {
+    ByteBuffer buffer = buffer(base64);
+    int[] values = new int[buffer.remaining() / Integer.BYTES];
+    buffer.asIntBuffer().get(values);
+
+    return values;
+  }
+
+  private static double[] decodeDoubles(String base64) {
+    ByteBuffer buffer = buffer(base64);
+    double[] values = new double[buffer.remaining() / Double.BYTES];
+    buffer.asDoubleBuffer().get(values);
+
+    return values;
+  }
+}
@@ -0,0 +1,76 @@
+package com.mapgrab.selenium;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.openqa.selenium.StaleElementReferenceException;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.mapgrab.selenium.codec.MapGrabCodec;
+import com.mapgrab.selenium.command.CommandRunner;
+import com.mapgrab.selenium.command.MapGrabCommand;
+
+// Loads properties of lazily queried results, the first SingleResult.getProperties()
+// call fetches every pending result of the same locator call in one command
+class PropertyLoader {
+  private static final JavaType PROPERTY_MAPS = MapGrabCodec.shared()
+      .constructType(new TypeReference<ArrayList<LinkedHashMap<String, String>>>() {
+      });
+
+  private static final MapGrabCommand RESOLVE_PROPERTIES = MapGrabCommand.forLocators("resolveProperties")
+      .perform("__MAPGRAB__.resolveProperties(args.params[0])");
+
+  private final CommandRunner runner;
+  private final List<SingleResult> results;
+
+  private PropertyLoader(CommandRunner runner, List<SingleResult> results) {
+    this.runner = runner;
+    this.results = results;
+  }
+
+  static void attach(CommandRunner runner, List<? extends Result> results) {
+    ArrayList<SingleResult> pending = new ArrayList<SingleResult>();
+
+    results.forEach((result) -> {
+      if (result instanceof SingleResult single && single.handle != null && single.properties == null) {
+        pending.add(single);
+      }
+    });
+
+    if (pending.isEmpty()) {
+      return;
+    }
+
+    PropertyLoader loader = new PropertyLoader(runner, pending);
+    pending.forEach((result) -> result.propertyLoader = loader);
+  }
+
+  synchronized void load() {
+    ArrayList<SingleResult> pending = new ArrayList<SingleResult>();
+
+    results.forEach((result) -> {
+      if (result.properties == null) {
+        pending.add(result);
+      }
+    });
+
+    if (pending.isEmpty()) {
+      return;
+    }
+
+    String[] handles = pending.stream().map((result) -> result.handle).toArray(String[]::new);
+    ArrayList<LinkedHashMap<String, String>> properties = runner.query(RESOLVE_PROPERTIES, new String[0],
+        PROPERTY_MAPS, (Object) handles);
+
+    for (int i = 0; i < pending.size(); i++) {
+      if (properties.get(i) == null) {
+        throw new StaleElementReferenceException(
+            "Feature properties are no longer available in the page (handle " + handles[i] + "), query again");
+      }
+
+      pending.get(i).properties = properties.get(i);
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.mapgrab.selenium;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+// Browser side profile of one locator query (MapLocator.explain()), times in milliseconds
+public class QueryExplanation {
+  public static class MapExplanation {
+    public String mapId;
+    // Null when the selector does not restrict layers and all layers are queried
+    public ArrayList<String> layerIds;
+    public double resolveLayersTime;
+    public double queryRenderedFeaturesTime;
+    // Features returned by queryRenderedFeatures, before the layer resolvers
+    public int renderedFeatureCount;
+    public LinkedHashMap<String, Integer> renderedFeatureCountByLayer;
+    public ArrayList<ResolverExplanation> resolvers;
+    public int resultCount;
+    public int visibleResultCount;
+    // Set when the map query failed (e.g. no layer matched), the map returns no results
+    public String error;
+  }
+
+  public static class ResolverExplanation {
+    // fill, line, circle or symbol
+    public String layerType;
+    public int inputCount;
+    public int outputCount;
+    public double time;
+  }
+
+  public String selector;
+  public double totalTime;
+  public double resolveMapsTime;
+  public int resultCount;
+  public ArrayList<MapExplanation> maps;
+
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    text.append(String.format("%s: %d results in %.2fms (maps %.2fms)%n", selector, resultCount, totalTime,
+        resolveMapsTime));
+
+    for (MapExplanation map : maps) {
+      text.append(String.format("  map %s layers=%s: layers %.2fms, queryRenderedFeatures %.2fms (%d features)%n",
+          map.mapId, map.layerIds == null ? "*" : map.layerIds, map.resolveLayersTime, map.queryRenderedFeaturesTime,
+          map.renderedFeatureCount));
+
+      for (ResolverExplanation resolver : map.resolvers) {
+        text.append(String.format("    %s resolver %.2fms (%d -> %d)%n", resolver.layerType, resolver.time,
+            resolver.inputCount, resolver.outputCount));
+      }
+
+      if (map.error != null) {
+        text.append("    error: ").append(map.error).append(System.lineSeparator());
+      }
+    }
+
+    return text.toString();
+  }
+}
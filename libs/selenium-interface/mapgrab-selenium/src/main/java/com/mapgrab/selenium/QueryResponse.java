@@ -0,0 +1,35 @@
+package com.mapgrab.selenium;
+
+import java.util.ArrayList;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.mapgrab.selenium.metrics.MeasuredResult;
+
+public class QueryResponse implements MeasuredResult {
+  public String epoch;
+  public boolean notModified;
+  public ArrayList<SingleResult> data;
+  // Set instead of data when the context uses WireFormat.PACKED
+  public PackedQueryResult packed;
+  // How many times the browser evaluated the selector before resolving
+  public int attempts;
+
+  @JsonIgnore
+  public ArrayList<SingleResult> getResults() {
+    return packed != null ? packed.decode() : data;
+  }
+
+  @Override
+  public int resultCount() {
+    if (packed != null) {
+      return packed.count;
+    }
+
+    return data != null ? data.size() : -1;
+  }
+
+  @Override
+  public int pollIterations() {
+    return attempts;
+  }
+}
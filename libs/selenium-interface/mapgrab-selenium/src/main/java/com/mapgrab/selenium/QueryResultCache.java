@@ -0,0 +1,105 @@
+package com.mapgrab.selenium;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mapgrab.selenium.codec.WireFormat;
+
+// Last query result per selector (and wire format / lazy mode, results differ between
+// them) together with the render epoch it was taken at, lets the browser answer
+// "not modified" instead of re-running the query
+public class QueryResultCache {
+  private static class Entry {
+    final String epoch;
+    final List<SingleResult> results;
+
+    Entry(String epoch, List<SingleResult> results) {
+      this.epoch = epoch;
+      this.results = results;
+    }
+  }
+
+  private final LinkedHashMap<String, Entry> entries;
+  private int capacity;
+
+  public QueryResultCache(int capacity) {
+    this.capacity = capacity;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > QueryResultCache.this.capacity;
+      }
+    };
+  }
+
+  public synchronized String getEpoch(String selector, WireFormat wireFormat, boolean lazy) {
+    Entry entry = entries.get(key(selector, wireFormat, lazy));
+
+    return entry != null ? entry.epoch : null;
+  }
+
+  // Property handle of a cached lazy result, the browser only answers "not modified"
+  // while the properties behind it are still kept in the page
+  public synchronized String getHandle(String selector, WireFormat wireFormat, boolean lazy) {
+    Entry entry = entries.get(key(selector, wireFormat, lazy));
+
+    if (entry == null) {
+      return null;
+    }
+
+    for (SingleResult result : entry.results) {
+      if (result.handle != null) {
+        return result.handle;
+      }
+    }
+
+    return null;
+  }
+
+  // Results are copied on the way in and out because locator post-processing
+  // (merge, offsets) mutates them
+  public synchronized ArrayList<SingleResult> get(String selector, WireFormat wireFormat, boolean lazy,
+      String epoch) {
+    Entry entry = entries.get(key(selector, wireFormat, lazy));
+
+    if (entry == null || !entry.epoch.equals(epoch)) {
+      return null;
+    }
+
+    return copy(entry.results);
+  }
+
+  public synchronized void put(String selector, WireFormat wireFormat, boolean lazy, String epoch,
+      List<SingleResult> results) {
+    if (capacity <= 0 || epoch == null) {
+      return;
+    }
+
+    entries.put(key(selector, wireFormat, lazy), new Entry(epoch, copy(results)));
+  }
+
+  public synchronized void setCapacity(int capacity) {
+    this.capacity = capacity;
+
+    if (capacity <= 0) {
+      entries.clear();
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  private static String key(String selector, WireFormat wireFormat, boolean lazy) {
+    return wireFormat + (lazy ? ":lazy:" : ":") + selector;
+  }
+
+  private static ArrayList<SingleResult> copy(List<SingleResult> results) {
+    ArrayList<SingleResult> copied = new ArrayList<SingleResult>(results.size());
+    results.forEach((result) -> copied.add(result.copy()));
+
+    return copied;
+  }
+}
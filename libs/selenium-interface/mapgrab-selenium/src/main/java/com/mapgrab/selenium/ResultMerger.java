@@ -0,0 +1,83 @@
+package com.mapgrab.selenium;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+
+import com.mapgrab.selenium.controller.ScreenPoint;
+
+// Groups results by key in a single pass, bounds are accumulated per group and
+// results are only built once all members are known. Groups keep the order in
+// which their first member appears in the query results
+class ResultMerger {
+  private static class Group {
+    final ArrayList<SingleResult> members = new ArrayList<SingleResult>(2);
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
+    int pointCount = 0;
+
+    void add(SingleResult result) {
+      BoundingBox rect = result.getDisplay();
+
+      minX = Math.min(minX, rect.x);
+      minY = Math.min(minY, rect.y);
+      maxX = Math.max(maxX, rect.right);
+      maxY = Math.max(maxY, rect.bottom);
+
+      if (result.getInteractionPoints() != null) {
+        pointCount += result.getInteractionPoints().size();
+      }
+
+      members.add(result);
+    }
+  }
+
+  private final Function<SingleResult, ?> key;
+
+  ResultMerger(Function<SingleResult, ?> key) {
+    this.key = key;
+  }
+
+  ArrayList<Result> merge(List<SingleResult> results) {
+    HashMap<Object, Group> groupsByKey = new HashMap<Object, Group>();
+    ArrayList<Group> groups = new ArrayList<Group>();
+
+    for (SingleResult result : results) {
+      Object groupKey = key.apply(result);
+      Group group = groupsByKey.get(groupKey);
+
+      if (group == null) {
+        group = new Group();
+        groupsByKey.put(groupKey, group);
+        groups.add(group);
+      }
+
+      group.add(result);
+    }
+
+    ArrayList<Result> merged = new ArrayList<Result>(groups.size());
+
+    for (Group group : groups) {
+      merged.add(group.members.size() == 1 ? group.members.get(0) : this.toResult(group));
+    }
+
+    return merged;
+  }
+
+  private MergedResult toResult(Group group) {
+    ArrayList<ScreenPoint> interactionPoints = new ArrayList<ScreenPoint>(group.pointCount);
+
+    for (SingleResult member : group.members) {
+      if (member.getInteractionPoints() != null) {
+        interactionPoints.addAll(member.getInteractionPoints());
+      }
+    }
+
+    BoundingBox rect = new BoundingBox(group.minX, group.minY, group.maxX - group.minX, group.maxY - group.minY);
+
+    return new MergedResult(interactionPoints, group.members, rect);
+  }
+}
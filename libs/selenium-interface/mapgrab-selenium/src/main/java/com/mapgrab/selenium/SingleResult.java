@@ -1,8 +1,12 @@
 package com.mapgrab.selenium;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.mapgrab.selenium.controller.ScreenPoint;
 
 public class SingleResult implements Result {
@@ -11,9 +15,41 @@ public class SingleResult implements Result {
   public String layerId;
   public String mapId;
   public Boolean isVisible;
+  // Null for lazy queries until getProperties() loads it through the handle
+  @JsonProperty
   public Map<String, String> properties;
+  public String handle;
   public List<ScreenPoint> interactionPoints;
   public BoundingBox rect;
+  PropertyLoader propertyLoader;
+
+  public SingleResult copy() {
+    SingleResult result = new SingleResult();
+    result.featureId = featureId;
+    result.sourceId = sourceId;
+    result.layerId = layerId;
+    result.mapId = mapId;
+    result.isVisible = isVisible;
+    result.handle = handle;
+    result.properties = properties != null ? new LinkedHashMap<String, String>(properties) : null;
+    result.rect = rect != null ? rect.copy() : null;
+
+    if (interactionPoints != null) {
+      result.interactionPoints = new ArrayList<ScreenPoint>(interactionPoints.size());
+      interactionPoints.forEach((point) -> result.interactionPoints.add(new ScreenPoint(point.x, point.y)));
+    }
+
+    return result;
+  }
+
+  @JsonIgnore
+  public Map<String, String> getProperties() {
+    if (properties == null && propertyLoader != null) {
+      propertyLoader.load();
+    }
+
+    return properties;
+  }
 
   @Override
   public BoundingBox getDisplay() {
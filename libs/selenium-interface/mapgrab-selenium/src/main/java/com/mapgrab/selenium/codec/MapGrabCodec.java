@@ -0,0 +1,86 @@
+package com.mapgrab.selenium.codec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+public class MapGrabCodec {
+  private static final MapGrabCodec SHARED = new MapGrabCodec();
+
+  private final ObjectMapper mapper;
+  private final Map<JavaType, ObjectReader> readers = new ConcurrentHashMap<>();
+  private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+  public MapGrabCodec() {
+    this.mapper = new ObjectMapper();
+    this.mapper.setSerializationInclusion(Include.NON_NULL);
+    this.mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+  }
+
+  public static MapGrabCodec shared() {
+    return SHARED;
+  }
+
+  public TypeFactory getTypeFactory() {
+    return this.mapper.getTypeFactory();
+  }
+
+  public JavaType constructType(TypeReference<?> type) {
+    return this.mapper.getTypeFactory().constructType(type);
+  }
+
+  public ObjectReader readerFor(JavaType type) {
+    return this.readers.computeIfAbsent(type, this.mapper::readerFor);
+  }
+
+  public ObjectReader readerFor(Class<?> type) {
+    return this.readerFor(this.mapper.getTypeFactory().constructType(type));
+  }
+
+  public ObjectWriter writerFor(Class<?> type) {
+    return this.writers.computeIfAbsent(type, this.mapper::writerFor);
+  }
+
+  public <T> T decode(Object raw, Class<T> type) {
+    return this.decode(raw, this.mapper.getTypeFactory().constructType(type));
+  }
+
+  public <T> T decode(Object raw, JavaType type) {
+    if (raw == null) {
+      return null;
+    }
+
+    if (raw instanceof String json) {
+      try {
+        return this.readerFor(type).readValue(json);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    // Fallback for WireFormat.OBJECT where Selenium already built the object tree
+    return this.mapper.convertValue(raw, type);
+  }
+
+  public String encode(Object value) {
+    if (value == null) {
+      return "null";
+    }
+
+    try {
+      return this.writerFor(value.getClass()).writeValueAsString(value);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package com.mapgrab.selenium.codec;
+
+public enum WireFormat {
+  // Browser returns JSON.stringify output which is parsed in one streaming pass
+  JSON,
+  // Browser returns plain objects which Selenium converts to LinkedHashMap trees
+  OBJECT,
+  // Like JSON, but locator query results are sent as base64 typed array columns
+  // with a string table and decoded into primitive arrays (PackedQueryResult)
+  PACKED;
+
+  public String encodeResult(String expression) {
+    return this == OBJECT ? expression : "JSON.stringify(" + expression + ")";
+  }
+}
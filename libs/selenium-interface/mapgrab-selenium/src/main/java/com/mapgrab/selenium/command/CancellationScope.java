@@ -0,0 +1,28 @@
+package com.mapgrab.selenium.command;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+// Binds a future to the calling thread, commands run inside the scope are sent in
+// slices and stop (aborting the browser side wait) once the future is cancelled
+public final class CancellationScope {
+  private static final ThreadLocal<Future<?>> current = new ThreadLocal<Future<?>>();
+
+  private CancellationScope() {
+  }
+
+  public static <T> T run(Future<?> future, Callable<T> task) throws Exception {
+    Future<?> previous = current.get();
+    current.set(future);
+
+    try {
+      return task.call();
+    } finally {
+      current.set(previous);
+    }
+  }
+
+  static Future<?> current() {
+    return current.get();
+  }
+}
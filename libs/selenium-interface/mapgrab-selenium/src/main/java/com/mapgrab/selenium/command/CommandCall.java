@@ -0,0 +1,91 @@
+package com.mapgrab.selenium.command;
+
+import java.time.Duration;
+import java.util.Collection;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.mapgrab.selenium.codec.MapGrabCodec;
+import com.mapgrab.selenium.metrics.MeasuredResult;
+import com.mapgrab.selenium.metrics.Operation;
+
+public class CommandCall {
+  private final CommandRunner runner;
+  private final MapGrabCommand command;
+  private final CommandRunner.Arguments arguments;
+  private Duration timeout;
+
+  CommandCall(CommandRunner runner, MapGrabCommand command, CommandRunner.Arguments arguments) {
+    this.runner = runner;
+    this.command = command;
+    this.arguments = arguments;
+  }
+
+  public CommandCall timeout(Duration timeout) {
+    this.timeout = timeout;
+
+    return this;
+  }
+
+  public MapGrabCommand getCommand() {
+    return command;
+  }
+
+  public CommandRunner.Arguments getArguments() {
+    return arguments;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public void execute() {
+    this.query((JavaType) null);
+  }
+
+  public <T> T query(Class<T> resultType) {
+    return this.query(runner.getContext().getCodec().getTypeFactory().constructType(resultType));
+  }
+
+  public <T> T query(JavaType resultType) {
+    MapGrabCodec codec = runner.getContext().getCodec();
+    Operation operation = runner.getContext().getMetrics().start(command.getName(), this.describeTarget());
+
+    try {
+      Object response = runner.run(this, operation);
+
+      if (resultType == null) {
+        return null;
+      }
+
+      long decodeStartedAt = System.nanoTime();
+      T result = codec.decode(response, resultType);
+      operation.span("DECODE", decodeStartedAt, System.nanoTime() - decodeStartedAt);
+
+      if (result instanceof MeasuredResult measured) {
+        operation.resultCount(measured.resultCount()).pollIterations(measured.pollIterations());
+      } else if (result instanceof Collection<?> collection) {
+        operation.resultCount(collection.size());
+      }
+
+      return result;
+    } catch (RuntimeException e) {
+      operation.error(e);
+
+      throw e;
+    } finally {
+      operation.finish();
+    }
+  }
+
+  private String describeTarget() {
+    if (arguments.mapId != null) {
+      return arguments.mapId;
+    }
+
+    if (arguments.selectors != null) {
+      return String.join(", ", arguments.selectors);
+    }
+
+    return arguments.selector;
+  }
+}
@@ -0,0 +1,270 @@
+package com.mapgrab.selenium.command;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.mapgrab.selenium.MapGrabContext;
+
+// Queues command scripts from concurrent callers of one driver and sends those
+// arriving within the coalesce window as one browser evaluation. The batch first
+// waits once for all maps the commands would wait for, then runs every script
+// with its own `done`, so each caller gets exactly its own response envelope
+public class CommandMultiplexer {
+  private static class Entry {
+    final String script;
+    final String arguments;
+    final List<String> waitSelectors;
+    // System.nanoTime() deadline of the calling command
+    final long deadline;
+    final CompletableFuture<Object> response = new CompletableFuture<Object>();
+
+    Entry(String script, String arguments, List<String> waitSelectors, long deadline) {
+      this.script = script;
+      this.arguments = arguments;
+      this.waitSelectors = waitSelectors;
+      this.deadline = deadline;
+    }
+  }
+
+  private static class Batch {
+    public List<String> calls = new ArrayList<String>();
+    // Remaining budget (ms) of each call when the batch is sent
+    public List<Long> budgets = new ArrayList<Long>();
+    public LinkedHashSet<String> waitSelectors = new LinkedHashSet<String>();
+    public Long waitTimeout;
+  }
+
+  // Idle dispatcher thread exits after this long so the context can be collected
+  private static final long DISPATCHER_IDLE_MILLIS = 30_000;
+
+  private static final String BATCH_PRELUDE = """
+      const batch = JSON.parse(arguments[0]);
+      const done = arguments[arguments.length - 1];
+      const responses = new Array(batch.calls.length);
+      const batchStartedAt = performance.now();
+      let pending = batch.calls.length;
+
+      // Shared stability wait, bounded by the smallest remaining budget of the batched calls
+      const sharedWait =
+        window.__MAPGRAB__ && batch.waitSelectors.length > 0
+          ? Promise.race([
+              Promise.resolve(window.__MAPGRAB__.waitMapStableForLocators(batch.waitSelectors)).catch(() => {}),
+              new Promise((resolve) => setTimeout(resolve, batch.waitTimeout)),
+            ])
+          : Promise.resolve();
+
+      const commands = [
+      """;
+
+  private static final String BATCH_SUFFIX = """
+      ];
+
+      const respond = (i, response) => {
+        responses[i] = response;
+
+        if (--pending === 0) {
+          done(responses);
+        }
+      };
+
+      sharedWait.then(() =>
+        commands.forEach((command, i) => {
+          try {
+            // Absolute deadline, time spent in the shared wait counts against each call
+            const call = JSON.parse(batch.calls[i]);
+            call.deadlineAt = batchStartedAt + batch.budgets[i];
+
+            command.apply(null, [JSON.stringify(call), (response) => respond(i, response)]);
+          } catch (e) {
+            respond(i, { error: String((e && e.message) || e) });
+          }
+        })
+      );
+      """;
+
+  private final MapGrabContext context;
+  private final List<Entry> queue = new ArrayList<Entry>();
+  private Thread dispatcher;
+
+  public CommandMultiplexer(MapGrabContext context) {
+    this.context = context;
+  }
+
+  public Object execute(String script, String arguments, List<String> waitSelectors, long deadline) {
+    Entry entry = new Entry(script, arguments, waitSelectors, deadline);
+
+    synchronized (this) {
+      queue.add(entry);
+
+      if (dispatcher == null) {
+        this.startDispatcher();
+      }
+
+      this.notifyAll();
+    }
+
+    try {
+      return entry.response.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+
+      if (e.getCause() instanceof Error cause) {
+        throw cause;
+      }
+
+      throw e;
+    }
+  }
+
+  // Synchronous script (cancel) run between batches instead of next to one
+  public Object executeScript(String script, String arguments) {
+    context.getSessionLock().lock();
+
+    try {
+      return context.getExecutor().executeScript(script, arguments);
+    } finally {
+      context.getSessionLock().unlock();
+    }
+  }
+
+  // Called with the monitor held
+  private void startDispatcher() {
+    // Own thread, dispatching on a caller's executor could deadlock when it is saturated
+    dispatcher = new Thread(this::dispatch, "mapgrab-multiplexer");
+    dispatcher.setDaemon(true);
+    dispatcher.start();
+  }
+
+  private void dispatch() {
+    try {
+      this.drain();
+    } finally {
+      synchronized (this) {
+        // Died on an unexpected throwable, callers must not wait for a dead thread
+        if (dispatcher == Thread.currentThread()) {
+          dispatcher = null;
+
+          if (!queue.isEmpty()) {
+            this.startDispatcher();
+          }
+        }
+      }
+    }
+  }
+
+  private void drain() {
+    while (true) {
+      synchronized (this) {
+        long idleSince = System.currentTimeMillis();
+
+        while (queue.isEmpty()) {
+          long idle = System.currentTimeMillis() - idleSince;
+
+          if (idle >= DISPATCHER_IDLE_MILLIS) {
+            dispatcher = null;
+            return;
+          }
+
+          try {
+            this.wait(DISPATCHER_IDLE_MILLIS - idle);
+          } catch (InterruptedException e) {
+            dispatcher = null;
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+      }
+
+      Duration window = context.getCoalesceWindow();
+
+      if (window != null && !window.isZero()) {
+        try {
+          Thread.sleep(window.toMillis(), window.toNanosPart() % 1_000_000);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      List<Entry> entries;
+
+      synchronized (this) {
+        entries = new ArrayList<Entry>(queue);
+        queue.clear();
+      }
+
+      this.send(entries);
+    }
+  }
+
+  private void send(List<Entry> entries) {
+    try {
+      if (entries.size() == 1) {
+        Entry entry = entries.get(0);
+
+        entry.response.complete(this.executeAsyncScript(entry.script, entry.arguments));
+
+        return;
+      }
+
+      Batch batch = new Batch();
+      StringBuilder script = new StringBuilder(BATCH_PRELUDE);
+      long now = System.nanoTime();
+
+      for (Entry entry : entries) {
+        long budget = Math.max(0, Duration.ofNanos(entry.deadline - now).toMillis());
+
+        batch.calls.add(entry.arguments);
+        batch.budgets.add(budget);
+        batch.waitTimeout = batch.waitTimeout == null ? budget : Math.min(batch.waitTimeout, budget);
+        batch.waitSelectors.addAll(entry.waitSelectors);
+        script.append("function () {\n").append(entry.script).append("\n},\n");
+      }
+
+      script.append(BATCH_SUFFIX);
+
+      List<?> responses = (List<?>) this.executeAsyncScript(script.toString(), context.getCodec().encode(batch));
+
+      for (int i = 0; i < entries.size(); i++) {
+        entries.get(i).response.complete(responses.get(i));
+      }
+    } catch (Throwable e) {
+      // Errors too, every caller is waiting for its entry
+      entries.forEach((entry) -> entry.response.completeExceptionally(e));
+    }
+  }
+
+  private Object executeAsyncScript(String script, String arguments) {
+    context.getSessionLock().lock();
+
+    try {
+      return context.getExecutor().executeAsyncScript(script, arguments);
+    } finally {
+      context.getSessionLock().unlock();
+    }
+  }
+
+  // Selectors for the shared wait, only when the first real step is a stability wait
+  static List<String> waitSelectors(List<CommandStep> steps, CommandRunner.Arguments arguments) {
+    for (CommandStep step : steps) {
+      if (step.isInterfaceWait()) {
+        continue;
+      }
+
+      return switch (step) {
+        case MAP_STABLE -> List.of("map[id=" + arguments.mapId + "]");
+        case LOCATOR_STABLE -> List.of(arguments.selector);
+        case LOCATORS_STABLE -> List.of(arguments.selectors);
+        default -> List.of();
+      };
+    }
+
+    return List.of();
+  }
+}
@@ -0,0 +1,318 @@
+package com.mapgrab.selenium.command;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+
+import org.openqa.selenium.JavascriptException;
+import org.openqa.selenium.JavascriptExecutor;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.mapgrab.selenium.MapGrabContext;
+import com.mapgrab.selenium.MapGrabTimeoutError;
+import com.mapgrab.selenium.codec.WireFormat;
+import com.mapgrab.selenium.metrics.Operation;
+
+public class CommandRunner {
+  public static class Arguments {
+    public String mapId;
+    public String selector;
+    public String[] selectors;
+    public String generation;
+    public Long timeout;
+    public String callId;
+    public Long slice;
+    public Boolean trace;
+    // Epochs the maps were last seen idle at, set when stability steps are skipped
+    public Map<String, Long> stableEpochs;
+    public Boolean reportStable;
+    public Object[] params;
+  }
+
+  private static class StaleDocumentException extends RuntimeException {
+  }
+
+  private static class UnstableMapException extends RuntimeException {
+  }
+
+  private final MapGrabContext context;
+  private final ReadinessCache readinessCache = new ReadinessCache();
+  private final StabilityTracker stabilityTracker = new StabilityTracker();
+  private final CommandMultiplexer multiplexer;
+
+  public CommandRunner(MapGrabContext context) {
+    this.context = context;
+    this.multiplexer = new CommandMultiplexer(context);
+  }
+
+  public MapGrabContext getContext() {
+    return context;
+  }
+
+  public ReadinessCache getReadinessCache() {
+    return readinessCache;
+  }
+
+  public StabilityTracker getStabilityTracker() {
+    return stabilityTracker;
+  }
+
+  public CommandCall call(MapGrabCommand command, String target, Object... params) {
+    Arguments arguments = new Arguments();
+    arguments.params = params;
+
+    if (command.getTarget() == MapGrabCommand.Target.MAP) {
+      arguments.mapId = target;
+    } else if (command.getTarget() == MapGrabCommand.Target.LOCATOR) {
+      arguments.selector = target;
+    }
+
+    return new CommandCall(this, command, arguments);
+  }
+
+  public CommandCall call(MapGrabCommand command, String[] selectors, Object... params) {
+    CommandCall call = this.call(command, (String) null, params);
+    call.getArguments().selectors = selectors;
+
+    return call;
+  }
+
+  public void execute(MapGrabCommand command, String target, Object... params) {
+    this.call(command, target, params).execute();
+  }
+
+  public <T> T query(MapGrabCommand command, String target, Class<T> resultType, Object... params) {
+    return this.call(command, target, params).query(resultType);
+  }
+
+  public <T> T query(MapGrabCommand command, String target, JavaType resultType, Object... params) {
+    return this.call(command, target, params).query(resultType);
+  }
+
+  public <T> T query(MapGrabCommand command, String[] selectors, JavaType resultType, Object... params) {
+    return this.call(command, selectors, params).query(resultType);
+  }
+
+  Object run(CommandCall call, Operation operation) {
+    MapGrabCommand command = call.getCommand();
+    Arguments arguments = call.getArguments();
+    Duration timeout = call.getTimeout() != null ? call.getTimeout() : context.getTimeout();
+    // One budget shared by all hops (and the retry after a stale document)
+    long startedAt = System.nanoTime();
+    long deadline = startedAt + timeout.toNanos();
+    Future<?> future = CancellationScope.current();
+
+    if (operation.isTracing()) {
+      arguments.trace = true;
+    }
+
+    if (future != null) {
+      arguments.callId = UUID.randomUUID().toString();
+      arguments.slice = context.getAsyncSlice().toMillis();
+    }
+
+    if (command.isMutating()) {
+      if (arguments.mapId != null) {
+        stabilityTracker.markDirty(arguments.mapId);
+      } else {
+        stabilityTracker.markAllDirty();
+      }
+    }
+
+    if (readinessCache.isReady(command.getTarget(), arguments.mapId)) {
+      arguments.generation = readinessCache.getGeneration();
+
+      try {
+        return this.runReady(command, arguments, operation, timeout, startedAt, deadline);
+      } catch (StaleDocumentException e) {
+        // Navigation or document change since the last command, fall back to full wait
+        readinessCache.invalidate();
+        stabilityTracker.invalidate();
+        context.getCameraSnapshotCache().invalidateAll();
+        arguments.generation = null;
+        arguments.stableEpochs = null;
+      }
+    }
+
+    return this.run(command, arguments, operation, false, timeout, startedAt, deadline);
+  }
+
+  private Object runReady(MapGrabCommand command, Arguments arguments, Operation operation, Duration timeout,
+      long startedAt, long deadline) {
+    // Read-only command on maps idle since the last command, the browser only confirms
+    // their epochs (commands made of stability waits alone still send one script)
+    if (!command.isMutating() && command.hasStabilityWait() && !command.getSteps(true, true).isEmpty()) {
+      arguments.stableEpochs = stabilityTracker.getStableEpochs(arguments.generation, arguments);
+    }
+
+    if (arguments.stableEpochs != null) {
+      try {
+        return this.run(command, arguments, operation, true, timeout, startedAt, deadline);
+      } catch (UnstableMapException e) {
+        // A map rendered since it was last seen idle, wait for stability after all
+        arguments.stableEpochs.keySet().forEach(stabilityTracker::markDirty);
+        arguments.stableEpochs = null;
+      }
+    }
+
+    return this.run(command, arguments, operation, true, timeout, startedAt, deadline);
+  }
+
+  private Object run(MapGrabCommand command, Arguments arguments, Operation operation, boolean skipInterface,
+      Duration timeout, long startedAt, long deadline) {
+    JavascriptExecutor executor = context.getExecutor();
+    WireFormat wireFormat = context.getWireFormat();
+    boolean skipStable = arguments.stableEpochs != null;
+    List<CommandStep> steps = command.getSteps(skipInterface, skipStable);
+
+    arguments.reportStable = !skipStable && command.hasStabilityWait() ? true : null;
+
+    if (context.getExecutionMode() == ExecutionMode.FUSED) {
+      arguments.timeout = this.remaining(command, steps.get(0), timeout, startedAt, deadline);
+
+      return this.unwrap(command, arguments, operation, this.send(executor, command,
+          command.getFusedScript(wireFormat, skipInterface, skipStable), arguments, operation, steps, deadline),
+          timeout, startedAt);
+    }
+
+    Object result = null;
+
+    for (CommandStep step : steps) {
+      arguments.timeout = this.remaining(command, step, timeout, startedAt, deadline);
+
+      result = this.unwrap(command, arguments, operation, this.send(executor, command,
+          command.getStepScript(step, wireFormat), arguments, operation, List.of(step), deadline), timeout,
+          startedAt);
+    }
+
+    return result;
+  }
+
+  private Object send(JavascriptExecutor executor, MapGrabCommand command, String script, Arguments arguments,
+      Operation operation, List<CommandStep> steps, long deadline) {
+    Future<?> future = CancellationScope.current();
+    this.throwIfCancelled(command, future);
+
+    long sentAt = System.nanoTime();
+    Object response = this.evaluate(executor, script, context.getCodec().encode(arguments),
+        CommandMultiplexer.waitSelectors(steps, arguments), deadline);
+
+    if (arguments.callId == null) {
+      operation.roundTrip(sentAt, System.nanoTime() - sentAt);
+
+      return response;
+    }
+
+    String resume = context.getCodec().encode(Map.of("callId", arguments.callId, "slice", arguments.slice));
+    String cancel = context.getCodec().encode(Map.of("callId", arguments.callId));
+
+    while (((Map<?, ?>) response).get("pending") != null) {
+      if (future != null && future.isCancelled()) {
+        this.cancel(executor, cancel);
+        this.throwIfCancelled(command, future);
+      }
+
+      response = this.evaluate(executor, MapGrabCommand.RESUME_SCRIPT, resume, List.of(), deadline);
+    }
+
+    operation.roundTrip(sentAt, System.nanoTime() - sentAt);
+
+    return response;
+  }
+
+  private Object evaluate(JavascriptExecutor executor, String script, String arguments, List<String> waitSelectors,
+      long deadline) {
+    if (context.getCoalesceWindow() != null) {
+      return multiplexer.execute(script, arguments, waitSelectors, deadline);
+    }
+
+    // Async commands of one driver run on their own threads, one script at a time
+    context.getSessionLock().lock();
+
+    try {
+      return executor.executeAsyncScript(script, arguments);
+    } finally {
+      context.getSessionLock().unlock();
+    }
+  }
+
+  // Not alongside a slice or batch in flight on the same session
+  private void cancel(JavascriptExecutor executor, String cancel) {
+    if (context.getCoalesceWindow() != null) {
+      multiplexer.executeScript(MapGrabCommand.CANCEL_SCRIPT, cancel);
+      return;
+    }
+
+    context.getSessionLock().lock();
+
+    try {
+      executor.executeScript(MapGrabCommand.CANCEL_SCRIPT, cancel);
+    } finally {
+      context.getSessionLock().unlock();
+    }
+  }
+
+  private void throwIfCancelled(MapGrabCommand command, Future<?> future) {
+    if (future != null && future.isCancelled()) {
+      throw new CancellationException(command.getName() + " cancelled");
+    }
+  }
+
+  private long remaining(MapGrabCommand command, CommandStep step, Duration timeout, long startedAt, long deadline) {
+    long now = System.nanoTime();
+
+    if (now >= deadline) {
+      throw new MapGrabTimeoutError(command.getName(), step.name(), timeout, Duration.ofNanos(now - startedAt));
+    }
+
+    return Duration.ofNanos(deadline - now).toMillis();
+  }
+
+  private Object unwrap(MapGrabCommand command, Arguments arguments, Operation operation, Object response,
+      Duration timeout, long startedAt) {
+    Map<?, ?> envelope = (Map<?, ?>) response;
+
+    if (operation.isRecording() && envelope.get("timings") instanceof Map<?, ?> timings) {
+      timings.forEach((phase, millis) -> operation.phase(String.valueOf(phase),
+          (long) (((Number) millis).doubleValue() * 1_000_000)));
+    }
+
+    if (envelope.get("spans") instanceof List<?> spans) {
+      operation.browserSpans(spans);
+    }
+
+    if (envelope.get("stale") != null) {
+      throw new StaleDocumentException();
+    }
+
+    if (envelope.get("unstable") != null) {
+      throw new UnstableMapException();
+    }
+
+    if (envelope.get("timeout") != null) {
+      Map<?, ?> details = (Map<?, ?>) envelope.get("timeout");
+
+      throw new MapGrabTimeoutError(command.getName(), String.valueOf(details.get("phase")), timeout,
+          Duration.ofNanos(System.nanoTime() - startedAt));
+    }
+
+    if (envelope.get("error") != null) {
+      throw new JavascriptException(command.getName() + ": " + envelope.get("error"));
+    }
+
+    readinessCache.markReady((String) envelope.get("generation"), command.getTarget(), arguments.mapId);
+
+    if (envelope.get("stable") instanceof Map<?, ?> epochs) {
+      stabilityTracker.markStable((String) envelope.get("generation"), arguments, epochs);
+    }
+
+    if (envelope.get("result") instanceof String encoded) {
+      operation.payloadBytes(encoded.length());
+    }
+
+    return envelope.get("result");
+  }
+}
@@ -0,0 +1,59 @@
+package com.mapgrab.selenium.command;
+
+public enum CommandStep {
+  INTERFACE("""
+      new Promise((resolve) => {
+        if (window.__MAPGRAB__) {
+          resolve();
+          return;
+        }
+
+        const h = () => {
+          window.removeEventListener('__MAPGRAB__::INTERFACE_INIT', h);
+          resolve();
+        };
+
+        window.addEventListener('__MAPGRAB__::INTERFACE_INIT', h);
+      })"""),
+  MAP_INTERFACE("""
+      new Promise((resolve) => {
+        const isReady = () => window.__MAPGRAB__ && window.__MAPGRAB__.getMapInterface(args.mapId);
+
+        if (isReady()) {
+          resolve();
+          return;
+        }
+
+        const h = () => {
+          if (isReady()) {
+            window.removeEventListener('__MAPGRAB__::MAP_INTERFACE_INIT', h);
+            resolve();
+          }
+        };
+
+        window.addEventListener('__MAPGRAB__::MAP_INTERFACE_INIT', h);
+      })"""),
+  MAP_LOADED("__MAPGRAB__.getMapInterface(args.mapId).controller.waitToMapLoaded()"),
+  MAP_STABLE("__MAPGRAB__.getMapInterface(args.mapId).controller.waitToMapStable()"),
+  LOCATOR_STABLE("__MAPGRAB__.waitMapStableForLocator(args.selector)"),
+  LOCATORS_STABLE("__MAPGRAB__.waitMapStableForLocators(args.selectors)"),
+  ACTION(null);
+
+  private final String script;
+
+  CommandStep(String script) {
+    this.script = script;
+  }
+
+  public String getScript() {
+    return script;
+  }
+
+  public boolean isInterfaceWait() {
+    return this == INTERFACE || this == MAP_INTERFACE;
+  }
+
+  public boolean isStabilityWait() {
+    return this == MAP_STABLE || this == LOCATOR_STABLE || this == LOCATORS_STABLE;
+  }
+}
@@ -0,0 +1,8 @@
+package com.mapgrab.selenium.command;
+
+public enum ExecutionMode {
+  // Whole command (waits, action, waits) compiled into a single executeAsyncScript
+  FUSED,
+  // Every step sent as a separate script, useful when debugging which step hangs
+  MULTI_HOP
+}
@@ -0,0 +1,339 @@
+package com.mapgrab.selenium.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.mapgrab.selenium.codec.WireFormat;
+
+public class MapGrabCommand {
+  public enum Target {
+    PAGE,
+    MAP,
+    LOCATOR,
+    LOCATORS
+  }
+
+  // Responses are wrapped in { generation, result, stable } | { error } | { timeout } | { stale }
+  // | { unstable } envelope, a command sent with known generation bails out when the document
+  // has changed, one sent with stableEpochs (stability steps skipped) when a map rendered since.
+  // Actions can watch `signal` which is aborted once the command settles or times out
+  private static final String SCRIPT_PRELUDE = """
+      const args = JSON.parse(arguments[0]);
+      const done = arguments[arguments.length - 1];
+
+      if (
+        args.generation &&
+        !(
+          window.__MAPGRAB__ &&
+          window.__MAPGRAB__.generation === args.generation &&
+          (!args.mapId || window.__MAPGRAB__.getMapInterface(args.mapId))
+        )
+      ) {
+        done({ stale: true });
+        return;
+      }
+
+      if (args.stableEpochs && !window.__MAPGRAB__.isStableAt(args.stableEpochs, args.selector ? [args.selector] : args.selectors)) {
+        done({ unstable: true });
+        return;
+      }
+
+      const startedAt = performance.now();
+      const abortController = new AbortController();
+      const signal = abortController.signal;
+      // Milliseconds spent per step, reported for metrics
+      const timings = {};
+      // Step and page spans (ms relative to startedAt), only for traced commands
+      const spans = args.trace ? [] : undefined;
+      let phase = 'START';
+      let phaseStartedAt = startedAt;
+      let timer;
+
+      if (args.trace) {
+        window.__MAPGRAB_TRACE__ = true;
+      }
+
+      const enterPhase = (next) => {
+        const now = performance.now();
+
+        if (phase !== 'START') {
+          timings[phase] = now - phaseStartedAt;
+
+          if (spans) {
+            spans.push({ name: phase, start: phaseStartedAt - startedAt, duration: now - phaseStartedAt, step: true });
+          }
+        }
+
+        phase = next;
+        phaseStartedAt = now;
+      };
+
+      const deadline = new Promise((resolve, reject) => {
+        if (args.timeout != null) {
+          // deadlineAt (performance.now() based) is set by the multiplexer, whose shared wait
+          // runs before the command starts
+          const budget = args.deadlineAt != null ? Math.max(0, args.deadlineAt - performance.now()) : args.timeout;
+          timer = setTimeout(() => reject({ __mapgrabTimeout: true }), budget);
+        }
+      });
+
+      let deliver = done;
+
+      // Sliced call (async API): answers { pending } every args.slice ms so the driver can
+      // cancel between slices, the command keeps running and is picked up by RESUME_SCRIPT
+      if (args.callId) {
+        const calls = (window.__MAPGRAB_CALLS__ = window.__MAPGRAB_CALLS__ || {});
+        const call = (calls[args.callId] = { slice: args.slice });
+
+        call.wait = (waiter) => {
+          call.waiter = waiter;
+          call.sliceTimer = setTimeout(() => {
+            call.waiter = undefined;
+            waiter({ pending: true });
+          }, call.slice);
+        };
+
+        call.cancel = () => {
+          deliver = () => {};
+          clearTimeout(timer);
+          abortController.abort();
+        };
+
+        deliver = (response) => {
+          clearTimeout(call.sliceTimer);
+
+          if (call.waiter) {
+            delete calls[args.callId];
+            call.waiter(response);
+          } else {
+            call.response = response;
+          }
+        };
+
+        call.wait(done);
+      }
+
+      const finish = (response) => {
+        clearTimeout(timer);
+        abortController.abort();
+        deliver(response);
+      };
+
+      const respond = (result) => {
+        enterPhase('END');
+
+        if (spans && window.__MAPGRAB__ && window.__MAPGRAB__.traceSpans) {
+          spans.push(...window.__MAPGRAB__.traceSpans(startedAt));
+        }
+
+        // Maps idle at the end of a command with stability steps, see StabilityTracker
+        const stable =
+          args.reportStable && window.__MAPGRAB__ && window.__MAPGRAB__.stableEpochs
+            ? window.__MAPGRAB__.stableEpochs(args.mapId, args.selector ? [args.selector] : args.selectors)
+            : undefined;
+
+        finish({ generation: window.__MAPGRAB__ && window.__MAPGRAB__.generation, result, timings, spans, stable });
+      };
+
+      const fail = (error) =>
+        error && error.__mapgrabTimeout
+          ? finish({ timeout: { phase, waited: performance.now() - startedAt } })
+          : finish({ error: String((error && error.message) || error) });
+      """;
+
+  static final String RESUME_SCRIPT = """
+      const args = JSON.parse(arguments[0]);
+      const done = arguments[arguments.length - 1];
+      const calls = window.__MAPGRAB_CALLS__;
+      const call = calls && calls[args.callId];
+
+      if (!call) {
+        done({ error: 'Command state lost, document changed while waiting' });
+      } else if ('response' in call) {
+        delete calls[args.callId];
+        done(call.response);
+      } else {
+        call.wait(done);
+      }
+      """;
+
+  static final String CANCEL_SCRIPT = """
+      const args = JSON.parse(arguments[0]);
+      const calls = window.__MAPGRAB_CALLS__;
+      const call = calls && calls[args.callId];
+
+      if (call) {
+        delete calls[args.callId];
+        call.cancel();
+      }
+      """;
+
+  private final String name;
+  private final Target target;
+  private final List<CommandStep> steps = new ArrayList<CommandStep>();
+  private String action;
+
+  private final Map<String, String> fusedScripts = new ConcurrentHashMap<>();
+  private final Map<WireFormat, String> actionScripts = new ConcurrentHashMap<>();
+
+  private MapGrabCommand(String name, Target target) {
+    this.name = name;
+    this.target = target;
+  }
+
+  public static MapGrabCommand forPage(String name) {
+    return new MapGrabCommand(name, Target.PAGE);
+  }
+
+  public static MapGrabCommand forMap(String name) {
+    MapGrabCommand command = new MapGrabCommand(name, Target.MAP);
+    command.steps.add(CommandStep.MAP_INTERFACE);
+
+    return command;
+  }
+
+  public static MapGrabCommand forLocator(String name) {
+    MapGrabCommand command = new MapGrabCommand(name, Target.LOCATOR);
+    command.steps.add(CommandStep.INTERFACE);
+
+    return command;
+  }
+
+  public static MapGrabCommand forLocators(String name) {
+    MapGrabCommand command = new MapGrabCommand(name, Target.LOCATORS);
+    command.steps.add(CommandStep.INTERFACE);
+
+    return command;
+  }
+
+  public MapGrabCommand awaitLoaded() {
+    if (target != Target.MAP) {
+      throw new IllegalStateException("awaitLoaded() requires map command");
+    }
+
+    steps.add(CommandStep.MAP_LOADED);
+
+    return this;
+  }
+
+  public MapGrabCommand awaitStable() {
+    if (target == Target.PAGE) {
+      throw new IllegalStateException("awaitStable() requires map or locator command");
+    }
+
+    steps.add(switch (target) {
+      case MAP -> CommandStep.MAP_STABLE;
+      case LOCATORS -> CommandStep.LOCATORS_STABLE;
+      default -> CommandStep.LOCATOR_STABLE;
+    });
+
+    return this;
+  }
+
+  // Action is a JS expression evaluated with `args` ({ mapId, selector, selectors, params })
+  // and `signal` in scope, it may return a value or a promise
+  public MapGrabCommand perform(String action) {
+    if (this.action != null) {
+      throw new IllegalStateException("Command " + name + " already has an action");
+    }
+
+    this.action = action;
+    steps.add(CommandStep.ACTION);
+
+    return this;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Target getTarget() {
+    return target;
+  }
+
+  public List<CommandStep> getSteps() {
+    return Collections.unmodifiableList(steps);
+  }
+
+  public String getAction() {
+    return action;
+  }
+
+  public List<CommandStep> getSteps(boolean skipInterface) {
+    return this.getSteps(skipInterface, false);
+  }
+
+  public List<CommandStep> getSteps(boolean skipInterface, boolean skipStable) {
+    if (!skipInterface && !skipStable) {
+      return this.getSteps();
+    }
+
+    return steps.stream().filter((step) -> !(skipInterface && step.isInterfaceWait()))
+        .filter((step) -> !(skipStable && step.isStabilityWait())).toList();
+  }
+
+  public boolean hasStabilityWait() {
+    return steps.stream().anyMatch(CommandStep::isStabilityWait);
+  }
+
+  // Action followed by a stability wait, the action changes the map
+  public boolean isMutating() {
+    int action = steps.indexOf(CommandStep.ACTION);
+
+    return action >= 0 && steps.subList(action, steps.size()).stream().anyMatch(CommandStep::isStabilityWait);
+  }
+
+  public String getFusedScript(WireFormat wireFormat, boolean skipInterface) {
+    return this.getFusedScript(wireFormat, skipInterface, false);
+  }
+
+  public String getFusedScript(WireFormat wireFormat, boolean skipInterface, boolean skipStable) {
+    return fusedScripts.computeIfAbsent(wireFormat + ":" + skipInterface + ":" + skipStable,
+        (key) -> compileFused(wireFormat, skipInterface, skipStable));
+  }
+
+  public String getStepScript(CommandStep step, WireFormat wireFormat) {
+    if (step == CommandStep.ACTION) {
+      return actionScripts.computeIfAbsent(wireFormat,
+          (format) -> compileStep(step, action, format.encodeResult("result")));
+    }
+
+    return compileStep(step, step.getScript(), "undefined");
+  }
+
+  private String compileFused(WireFormat wireFormat, boolean skipInterface, boolean skipStable) {
+    StringBuilder body = new StringBuilder();
+
+    for (CommandStep step : this.getSteps(skipInterface, skipStable)) {
+      body.append("  enterPhase('").append(step.name()).append("');\n");
+
+      if (step == CommandStep.ACTION) {
+        body.append("  result = await (").append(action).append(");\n");
+      } else {
+        body.append("  await (").append(step.getScript()).append(");\n");
+      }
+    }
+
+    return SCRIPT_PRELUDE + """
+        Promise.race([
+          (async () => {
+            let result;
+        %s
+            return result;
+          })(),
+          deadline,
+        ]).then((result) => respond(%s), fail);
+        """.formatted(body, wireFormat.encodeResult("result"));
+  }
+
+  private static String compileStep(CommandStep step, String expression, String encodedResult) {
+    return SCRIPT_PRELUDE + """
+        enterPhase('%s');
+
+        Promise.race([Promise.resolve().then(() => (%s)), deadline]).then((result) => respond(%s), fail);
+        """.formatted(step.name(), expression, encodedResult);
+  }
+}
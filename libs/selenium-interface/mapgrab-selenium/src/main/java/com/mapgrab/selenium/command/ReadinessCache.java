@@ -0,0 +1,51 @@
+package com.mapgrab.selenium.command;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// Remembers for which document (identified by __MAPGRAB__.generation) the
+// interface and map interfaces were already seen, so commands can skip the wait
+public class ReadinessCache {
+  private String generation;
+  private boolean interfaceReady = false;
+  private final Set<String> readyMaps = new HashSet<String>();
+
+  public synchronized String getGeneration() {
+    return generation;
+  }
+
+  public synchronized boolean isReady(MapGrabCommand.Target target, String mapId) {
+    if (generation == null) {
+      return false;
+    }
+
+    return switch (target) {
+      case PAGE -> false;
+      case LOCATOR, LOCATORS -> interfaceReady;
+      case MAP -> readyMaps.contains(mapId);
+    };
+  }
+
+  public synchronized void markReady(String generation, MapGrabCommand.Target target, String mapId) {
+    if (generation == null) {
+      return;
+    }
+
+    if (!generation.equals(this.generation)) {
+      this.invalidate();
+      this.generation = generation;
+    }
+
+    interfaceReady = true;
+
+    if (target == MapGrabCommand.Target.MAP) {
+      readyMaps.add(mapId);
+    }
+  }
+
+  public synchronized void invalidate() {
+    generation = null;
+    interfaceReady = false;
+    readyMaps.clear();
+  }
+}
@@ -0,0 +1,90 @@
+package com.mapgrab.selenium.command;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Per map epoch (MapInterface.epoch) at which the map was last seen idle, and the maps
+// each locator resolved to. Read-only commands on clean maps skip their stability steps,
+// the browser only confirms the epochs are unchanged. Mutations mark maps dirty
+public class StabilityTracker {
+  private String generation;
+  private final Map<String, Long> cleanMaps = new HashMap<String, Long>();
+  private final Map<String, Set<String>> locatorMaps = new HashMap<String, Set<String>>();
+
+  // Epochs to confirm instead of waiting, null when any covered map is dirty or unknown
+  synchronized Map<String, Long> getStableEpochs(String generation, CommandRunner.Arguments arguments) {
+    if (generation == null || !generation.equals(this.generation)) {
+      return null;
+    }
+
+    Set<String> mapIds = this.coveredMaps(arguments);
+
+    if (mapIds == null || mapIds.isEmpty() || !cleanMaps.keySet().containsAll(mapIds)) {
+      return null;
+    }
+
+    Map<String, Long> epochs = new HashMap<String, Long>();
+    mapIds.forEach((mapId) -> epochs.put(mapId, cleanMaps.get(mapId)));
+
+    return epochs;
+  }
+
+  // Epoch the map was last seen idle at in that document, null when dirty or unknown
+  public synchronized Long getStableEpoch(String generation, String mapId) {
+    if (generation == null || !generation.equals(this.generation)) {
+      return null;
+    }
+
+    return cleanMaps.get(mapId);
+  }
+
+  synchronized void markStable(String generation, CommandRunner.Arguments arguments, Map<?, ?> epochs) {
+    if (generation == null) {
+      return;
+    }
+
+    if (!generation.equals(this.generation)) {
+      this.invalidate();
+      this.generation = generation;
+    }
+
+    Set<String> mapIds = new HashSet<String>();
+
+    epochs.forEach((mapId, epoch) -> {
+      mapIds.add((String) mapId);
+      cleanMaps.put((String) mapId, ((Number) epoch).longValue());
+    });
+
+    if (arguments.mapId == null) {
+      locatorMaps.put(locatorKey(arguments), mapIds);
+    }
+  }
+
+  public synchronized void markDirty(String mapId) {
+    cleanMaps.remove(mapId);
+  }
+
+  public synchronized void markAllDirty() {
+    cleanMaps.clear();
+  }
+
+  public synchronized void invalidate() {
+    generation = null;
+    cleanMaps.clear();
+    locatorMaps.clear();
+  }
+
+  private Set<String> coveredMaps(CommandRunner.Arguments arguments) {
+    if (arguments.mapId != null) {
+      return Set.of(arguments.mapId);
+    }
+
+    return locatorMaps.get(locatorKey(arguments));
+  }
+
+  private static String locatorKey(CommandRunner.Arguments arguments) {
+    return arguments.selector != null ? arguments.selector : String.join("\n", arguments.selectors);
+  }
+}
@@ -0,0 +1,17 @@
+package com.mapgrab.selenium.controller;
+
+public class CameraSnapshot {
+  public LngLat center;
+  public double zoom;
+  public double bearing;
+  public double pitch;
+  // Vertical field of view in radians
+  public double fov;
+  public double tileSize;
+  public double width;
+  public double height;
+  public PaddingOptions padding;
+  // Canvas container position on the page
+  public double offsetX;
+  public double offsetY;
+}
@@ -0,0 +1,16 @@
+package com.mapgrab.selenium.controller;
+
+import java.util.ArrayList;
+
+// Layer captures finished since the previous poll of MapController.captureLayers
+public class LayerCaptures {
+  public static class LayerCapture {
+    public String layerId;
+    // Base64 PNG of the clip in device pixels
+    public String png;
+  }
+
+  public ArrayList<LayerCapture> captures;
+  public boolean done;
+  public String error;
+}
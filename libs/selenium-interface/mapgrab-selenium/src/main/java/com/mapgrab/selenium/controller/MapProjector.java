@@ -0,0 +1,278 @@
+package com.mapgrab.selenium.controller;
+
+// Web Mercator projection computed locally from a CameraSnapshot. Matrices follow
+// MapLibre/Mapbox transform (perspective, padding offset, pitch, bearing), so
+// results match map.project()/map.unproject() for maps without terrain
+public class MapProjector {
+  private static final double MAX_LATITUDE = 85.051129;
+
+  private final CameraSnapshot snapshot;
+  private final double worldSize;
+  private final double[] pixelMatrix;
+  private final double[] pixelMatrixInverse;
+
+  public MapProjector(CameraSnapshot snapshot) {
+    this.snapshot = snapshot;
+    this.worldSize = snapshot.tileSize * Math.pow(2, snapshot.zoom);
+    this.pixelMatrix = createPixelMatrix(snapshot, worldSize);
+    this.pixelMatrixInverse = invert(pixelMatrix);
+  }
+
+  public CameraSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  // Returns page coordinates [x, y] without rounding
+  public double[] project(double lng, double lat) {
+    double[] out = new double[2];
+    this.project(lng, lat, out, 0);
+
+    return out;
+  }
+
+  public void project(double lng, double lat, double[] out, int offset) {
+    double x = mercatorX(lng) * worldSize;
+    double y = mercatorY(lat) * worldSize;
+    double[] m = pixelMatrix;
+
+    double w = m[3] * x + m[7] * y + m[15];
+
+    out[offset] = (m[0] * x + m[4] * y + m[12]) / w + snapshot.offsetX;
+    out[offset + 1] = (m[1] * x + m[5] * y + m[13]) / w + snapshot.offsetY;
+  }
+
+  // Rounded the same way as MapController.projectLngLatToScreenPoint
+  public ScreenPoint project(LngLat lngLat) {
+    double[] point = this.project(lngLat.lng, lngLat.lat);
+
+    return new ScreenPoint((int) Math.round(point[0]), (int) Math.round(point[1]));
+  }
+
+  // Returns [lng, lat] for page coordinates
+  public double[] unproject(double x, double y) {
+    double[] out = new double[2];
+    this.unproject(x, y, out, 0);
+
+    return out;
+  }
+
+  public void unproject(double x, double y, double[] out, int offset) {
+    double px = x - snapshot.offsetX;
+    double py = y - snapshot.offsetY;
+    double[] m = pixelMatrixInverse;
+
+    // Intersect ray between near (z = 0) and far (z = 1) plane with the ground plane
+    double w0 = m[3] * px + m[7] * py + m[15];
+    double x0 = (m[0] * px + m[4] * py + m[12]) / w0;
+    double y0 = (m[1] * px + m[5] * py + m[13]) / w0;
+    double z0 = (m[2] * px + m[6] * py + m[14]) / w0;
+
+    double w1 = m[3] * px + m[7] * py + m[11] + m[15];
+    double x1 = (m[0] * px + m[4] * py + m[8] + m[12]) / w1;
+    double y1 = (m[1] * px + m[5] * py + m[9] + m[13]) / w1;
+    double z1 = (m[2] * px + m[6] * py + m[10] + m[14]) / w1;
+
+    double t = z0 == z1 ? 0 : (0 - z0) / (z1 - z0);
+
+    out[offset] = lngFromMercatorX((x0 + (x1 - x0) * t) / worldSize);
+    out[offset + 1] = latFromMercatorY((y0 + (y1 - y0) * t) / worldSize);
+  }
+
+  public LngLat unproject(ScreenPoint point) {
+    double[] lngLat = this.unproject(point.x, point.y);
+
+    return new LngLat(lngLat[0], lngLat[1]);
+  }
+
+  private static double[] createPixelMatrix(CameraSnapshot snapshot, double worldSize) {
+    double width = snapshot.width;
+    double height = snapshot.height;
+    double pitch = Math.toRadians(snapshot.pitch);
+    double angle = -Math.toRadians(snapshot.bearing);
+    double halfFov = snapshot.fov / 2;
+
+    // Padding moves the vanishing point, same as EdgeInsets.getCenter() - size / 2
+    PaddingOptions padding = snapshot.padding;
+    double top = padding != null && padding.top != null ? padding.top : 0;
+    double bottom = padding != null && padding.bottom != null ? padding.bottom : 0;
+    double left = padding != null && padding.left != null ? padding.left : 0;
+    double right = padding != null && padding.right != null ? padding.right : 0;
+    double offsetX = clamp((left + width - right) / 2, 0, width) - width / 2;
+    double offsetY = clamp((top + height - bottom) / 2, 0, height) - height / 2;
+
+    double cameraToCenterDistance = 0.5 / Math.tan(halfFov) * height;
+    double centerX = mercatorX(snapshot.center.lng) * worldSize;
+    double centerY = mercatorY(snapshot.center.lat) * worldSize;
+
+    // Near and far planes only affect depth, any valid pair keeps x/y identical
+    double nearZ = height / 50;
+    double farZ = cameraToCenterDistance * 100 + worldSize;
+
+    double[] m = perspective(snapshot.fov, width / height, nearZ, farZ);
+    m[8] = -offsetX * 2 / width;
+    m[9] = offsetY * 2 / height;
+    scale(m, 1, -1, 1);
+    translate(m, 0, 0, -cameraToCenterDistance);
+    rotateX(m, pitch);
+    rotateZ(m, angle);
+    translate(m, -centerX, -centerY, 0);
+
+    double[] labelPlaneMatrix = identity();
+    scale(labelPlaneMatrix, width / 2, -height / 2, 1);
+    translate(labelPlaneMatrix, 1, -1, 0);
+
+    return multiply(labelPlaneMatrix, m);
+  }
+
+  private static double mercatorX(double lng) {
+    return (180 + lng) / 360;
+  }
+
+  private static double mercatorY(double lat) {
+    double clamped = clamp(lat, -MAX_LATITUDE, MAX_LATITUDE);
+
+    return (180 - (180 / Math.PI * Math.log(Math.tan(Math.PI / 4 + clamped * Math.PI / 360)))) / 360;
+  }
+
+  private static double lngFromMercatorX(double x) {
+    return x * 360 - 180;
+  }
+
+  private static double latFromMercatorY(double y) {
+    double y2 = 180 - y * 360;
+
+    return 360 / Math.PI * Math.atan(Math.exp(y2 * Math.PI / 180)) - 90;
+  }
+
+  private static double clamp(double value, double min, double max) {
+    return Math.min(max, Math.max(min, value));
+  }
+
+  // Column-major 4x4 matrix helpers, ported from gl-matrix
+
+  private static double[] identity() {
+    double[] out = new double[16];
+    out[0] = out[5] = out[10] = out[15] = 1;
+
+    return out;
+  }
+
+  private static double[] perspective(double fovy, double aspect, double near, double far) {
+    double f = 1.0 / Math.tan(fovy / 2);
+    double nf = 1 / (near - far);
+    double[] out = new double[16];
+
+    out[0] = f / aspect;
+    out[5] = f;
+    out[10] = (far + near) * nf;
+    out[11] = -1;
+    out[14] = 2 * far * near * nf;
+
+    return out;
+  }
+
+  private static void scale(double[] m, double x, double y, double z) {
+    for (int i = 0; i < 4; i++) {
+      m[i] *= x;
+      m[4 + i] *= y;
+      m[8 + i] *= z;
+    }
+  }
+
+  private static void translate(double[] m, double x, double y, double z) {
+    for (int i = 0; i < 4; i++) {
+      m[12 + i] = m[i] * x + m[4 + i] * y + m[8 + i] * z + m[12 + i];
+    }
+  }
+
+  private static void rotateX(double[] m, double rad) {
+    double s = Math.sin(rad);
+    double c = Math.cos(rad);
+
+    for (int i = 0; i < 4; i++) {
+      double a1 = m[4 + i];
+      double a2 = m[8 + i];
+
+      m[4 + i] = a1 * c + a2 * s;
+      m[8 + i] = a2 * c - a1 * s;
+    }
+  }
+
+  private static void rotateZ(double[] m, double rad) {
+    double s = Math.sin(rad);
+    double c = Math.cos(rad);
+
+    for (int i = 0; i < 4; i++) {
+      double a0 = m[i];
+      double a1 = m[4 + i];
+
+      m[i] = a0 * c + a1 * s;
+      m[4 + i] = a1 * c - a0 * s;
+    }
+  }
+
+  private static double[] multiply(double[] a, double[] b) {
+    double[] out = new double[16];
+
+    for (int col = 0; col < 4; col++) {
+      for (int row = 0; row < 4; row++) {
+        double sum = 0;
+
+        for (int k = 0; k < 4; k++) {
+          sum += a[k * 4 + row] * b[col * 4 + k];
+        }
+
+        out[col * 4 + row] = sum;
+      }
+    }
+
+    return out;
+  }
+
+  private static double[] invert(double[] a) {
+    double a00 = a[0], a01 = a[1], a02 = a[2], a03 = a[3];
+    double a10 = a[4], a11 = a[5], a12 = a[6], a13 = a[7];
+    double a20 = a[8], a21 = a[9], a22 = a[10], a23 = a[11];
+    double a30 = a[12], a31 = a[13], a32 = a[14], a33 = a[15];
+
+    double b00 = a00 * a11 - a01 * a10;
+    double b01 = a00 * a12 - a02 * a10;
+    double b02 = a00 * a13 - a03 * a10;
+    double b03 = a01 * a12 - a02 * a11;
+    double b04 = a01 * a13 - a03 * a11;
+    double b05 = a02 * a13 - a03 * a12;
+    double b06 = a20 * a31 - a21 * a30;
+    double b07 = a20 * a32 - a22 * a30;
+    double b08 = a20 * a33 - a23 * a30;
+    double b09 = a21 * a32 - a22 * a31;
+    double b10 = a21 * a33 - a23 * a31;
+    double b11 = a22 * a33 - a23 * a32;
+
+    double det = b00 * b11 - b01 * b10 + b02 * b09 + b03 * b08 - b04 * b07 + b05 * b06;
+
+    if (det == 0) {
+      throw new IllegalStateException("Camera matrix is not invertible");
+    }
+
+    det = 1.0 / det;
+
+    return new double[] {
+        (a11 * b11 - a12 * b10 + a13 * b09) * det,
+        (a02 * b10 - a01 * b11 - a03 * b09) * det,
+        (a31 * b05 - a32 * b04 + a33 * b03) * det,
+        (a22 * b04 - a21 * b05 - a23 * b03) * det,
+        (a12 * b08 - a10 * b11 - a13 * b07) * det,
+        (a00 * b11 - a02 * b08 + a03 * b07) * det,
+        (a32 * b02 - a30 * b05 - a33 * b01) * det,
+        (a20 * b05 - a22 * b02 + a23 * b01) * det,
+        (a10 * b10 - a11 * b08 + a13 * b06) * det,
+        (a01 * b08 - a00 * b10 - a03 * b06) * det,
+        (a30 * b04 - a31 * b02 + a33 * b00) * det,
+        (a21 * b02 - a20 * b04 - a23 * b00) * det,
+        (a11 * b07 - a10 * b09 - a12 * b06) * det,
+        (a00 * b09 - a01 * b07 + a02 * b06) * det,
+        (a31 * b01 - a30 * b03 - a32 * b00) * det,
+        (a20 * b03 - a21 * b01 + a22 * b00) * det
+    };
+  }
+}
@@ -0,0 +1,169 @@
+package com.mapgrab.selenium.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+// Opt-in listener keeping the timeline of every operation (client phases plus spans
+// reported by the page) and writing it as Chrome trace-event JSON, which opens in
+// Perfetto or chrome://tracing. Client and browser spans are separate processes
+// with one track per calling thread
+public class ChromeTraceRecorder implements MapGrabListener {
+  private static final int CLIENT_PID = 1;
+  private static final int BROWSER_PID = 2;
+
+  private final JsonFactory jsonFactory = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  private final ArrayDeque<OperationMetrics> operations = new ArrayDeque<OperationMetrics>();
+  private final int capacity;
+
+  public ChromeTraceRecorder() {
+    this(100_000);
+  }
+
+  // Oldest operations are dropped once capacity is reached
+  public ChromeTraceRecorder(int capacity) {
+    this.capacity = capacity;
+  }
+
+  @Override
+  public boolean needsSpans() {
+    return true;
+  }
+
+  @Override
+  public synchronized void onOperation(OperationMetrics metrics) {
+    if (operations.size() == capacity) {
+      operations.removeFirst();
+    }
+
+    operations.addLast(metrics);
+  }
+
+  public synchronized int size() {
+    return operations.size();
+  }
+
+  public synchronized void clear() {
+    operations.clear();
+  }
+
+  public void writeTo(Path path) throws IOException {
+    try (OutputStream output = Files.newOutputStream(path)) {
+      this.writeTo(output);
+    }
+  }
+
+  public void writeTo(OutputStream output) throws IOException {
+    List<OperationMetrics> snapshot;
+
+    synchronized (this) {
+      snapshot = new ArrayList<OperationMetrics>(operations);
+    }
+
+    long origin = snapshot.stream().mapToLong((metrics) -> metrics.startedAt).min().orElse(0);
+    Map<Long, String> threads = new LinkedHashMap<Long, String>();
+    snapshot.forEach((metrics) -> threads.putIfAbsent(metrics.threadId, metrics.threadName));
+
+    try (JsonGenerator json = jsonFactory.createGenerator(output)) {
+      json.writeStartObject();
+      json.writeStringField("displayTimeUnit", "ms");
+      json.writeArrayFieldStart("traceEvents");
+
+      this.writeMetadata(json, CLIENT_PID, null, "process_name", "MapGrab client");
+      this.writeMetadata(json, BROWSER_PID, null, "process_name", "Browser");
+
+      for (Map.Entry<Long, String> thread : threads.entrySet()) {
+        this.writeMetadata(json, CLIENT_PID, thread.getKey(), "thread_name", thread.getValue());
+        this.writeMetadata(json, BROWSER_PID, thread.getKey(), "thread_name", thread.getValue());
+      }
+
+      for (OperationMetrics metrics : snapshot) {
+        this.writeOperation(json, metrics, origin);
+      }
+
+      json.writeEndArray();
+      json.writeEndObject();
+    }
+  }
+
+  private void writeOperation(JsonGenerator json, OperationMetrics metrics, long origin) throws IOException {
+    this.writeEventStart(json, metrics.operation, "operation", CLIENT_PID, metrics.threadId,
+        metrics.startedAt - origin, metrics.total.toNanos());
+
+    json.writeObjectFieldStart("args");
+    json.writeStringField("target", metrics.target);
+
+    if (metrics.payloadBytes >= 0) {
+      json.writeNumberField("payloadBytes", metrics.payloadBytes);
+    }
+
+    if (metrics.resultCount >= 0) {
+      json.writeNumberField("resultCount", metrics.resultCount);
+    }
+
+    if (metrics.pollIterations >= 0) {
+      json.writeNumberField("pollIterations", metrics.pollIterations);
+    }
+
+    if (metrics.error != null) {
+      json.writeStringField("error", metrics.error.toString());
+    }
+
+    json.writeEndObject();
+    json.writeEndObject();
+
+    if (metrics.spans == null) {
+      return;
+    }
+
+    for (TraceSpan span : metrics.spans) {
+      String category = switch (span.side) {
+        case CLIENT -> "client";
+        case BROWSER_STEP -> "browser.step";
+        case BROWSER -> "browser";
+      };
+
+      this.writeEventStart(json, span.name, category, span.side == TraceSpan.Side.CLIENT ? CLIENT_PID : BROWSER_PID,
+          metrics.threadId, span.start - origin, span.duration);
+      json.writeEndObject();
+    }
+  }
+
+  // Complete ("X") event, timestamps in microseconds
+  private void writeEventStart(JsonGenerator json, String name, String category, int pid, long tid, long start,
+      long duration) throws IOException {
+    json.writeStartObject();
+    json.writeStringField("name", name);
+    json.writeStringField("cat", category);
+    json.writeStringField("ph", "X");
+    json.writeNumberField("ts", start / 1000.0);
+    json.writeNumberField("dur", duration / 1000.0);
+    json.writeNumberField("pid", pid);
+    json.writeNumberField("tid", tid);
+  }
+
+  private void writeMetadata(JsonGenerator json, int pid, Long tid, String name, String value) throws IOException {
+    json.writeStartObject();
+    json.writeStringField("name", name);
+    json.writeStringField("ph", "M");
+    json.writeNumberField("pid", pid);
+
+    if (tid != null) {
+      json.writeNumberField("tid", tid);
+    }
+
+    json.writeObjectFieldStart("args");
+    json.writeStringField("name", value);
+    json.writeEndObject();
+    json.writeEndObject();
+  }
+}
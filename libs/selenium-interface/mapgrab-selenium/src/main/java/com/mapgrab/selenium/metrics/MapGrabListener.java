@@ -0,0 +1,12 @@
+package com.mapgrab.selenium.metrics;
+
+// Receives metrics of every finished operation (browser command, mouse action).
+// Register on MapGrabContext or globally through META-INF/services
+public interface MapGrabListener {
+  void onOperation(OperationMetrics metrics);
+
+  // Spans cost an allocation per phase and make the browser report its own spans
+  default boolean needsSpans() {
+    return false;
+  }
+}
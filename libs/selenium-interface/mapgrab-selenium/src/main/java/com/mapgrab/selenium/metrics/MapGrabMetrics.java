@@ -0,0 +1,47 @@
+package com.mapgrab.selenium.metrics;
+
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import jdk.jfr.EventType;
+
+// Per context listener registry, listeners from META-INF/services are shared by all contexts
+public class MapGrabMetrics {
+  private static final List<MapGrabListener> serviceListeners = ServiceLoader.load(MapGrabListener.class).stream()
+      .map(ServiceLoader.Provider::get).toList();
+
+  private static final EventType operationEventType = EventType.getEventType(MapGrabOperationEvent.class);
+
+  private final List<MapGrabListener> listeners = new CopyOnWriteArrayList<MapGrabListener>();
+
+  public MapGrabMetrics addListener(MapGrabListener listener) {
+    listeners.add(listener);
+
+    return this;
+  }
+
+  public MapGrabMetrics removeListener(MapGrabListener listener) {
+    listeners.remove(listener);
+
+    return this;
+  }
+
+  public boolean isEnabled() {
+    return !listeners.isEmpty() || !serviceListeners.isEmpty() || operationEventType.isEnabled();
+  }
+
+  public boolean isTracing() {
+    return listeners.stream().anyMatch(MapGrabListener::needsSpans)
+        || serviceListeners.stream().anyMatch(MapGrabListener::needsSpans);
+  }
+
+  public Operation start(String operation, String target) {
+    return this.isEnabled() ? new Operation(this, operation, target, this.isTracing()) : Operation.NOOP;
+  }
+
+  void publish(OperationMetrics metrics) {
+    serviceListeners.forEach((listener) -> listener.onOperation(metrics));
+    listeners.forEach((listener) -> listener.onOperation(metrics));
+  }
+}
@@ -0,0 +1,64 @@
+package com.mapgrab.selenium.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.mapgrab.Operation")
+@Label("MapGrab Operation")
+@Category("MapGrab")
+@Description("Browser command or mouse action issued by MapLocator/MapController")
+@StackTrace(false)
+class MapGrabOperationEvent extends Event {
+  @Label("Operation")
+  String operation;
+
+  @Label("Target")
+  String target;
+
+  @Label("Interface Wait")
+  @Timespan
+  long interfaceWait;
+
+  @Label("Map Loaded Wait")
+  @Timespan
+  long loadedWait;
+
+  @Label("Map Stable Wait")
+  @Timespan
+  long stableWait;
+
+  @Label("Action")
+  @Timespan
+  long action;
+
+  @Label("Round Trip")
+  @Timespan
+  long roundTrip;
+
+  @Label("Decode")
+  @Timespan
+  long decode;
+
+  @Label("Mouse Action")
+  @Timespan
+  long mouseAction;
+
+  @Label("Payload Size")
+  @DataAmount
+  long payloadBytes;
+
+  @Label("Result Count")
+  int resultCount;
+
+  @Label("Poll Iterations")
+  int pollIterations;
+
+  @Label("Error")
+  String error;
+}
@@ -0,0 +1,8 @@
+package com.mapgrab.selenium.metrics;
+
+// Decoded command results which know their size and how often the page polled
+public interface MeasuredResult {
+  int resultCount();
+
+  int pollIterations();
+}
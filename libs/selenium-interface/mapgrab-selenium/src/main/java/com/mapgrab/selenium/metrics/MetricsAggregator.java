@@ -0,0 +1,98 @@
+package com.mapgrab.selenium.metrics;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Built-in listener collecting durations per operation and phase ("TOTAL" for the
+// whole operation) and reporting p50/p95/p99
+public class MetricsAggregator implements MapGrabListener {
+  public static final String TOTAL = "TOTAL";
+
+  public static class Stats {
+    public int count;
+    public Duration p50;
+    public Duration p95;
+    public Duration p99;
+    public Duration max;
+
+    @Override
+    public String toString() {
+      return "count=" + count + " p50=" + p50.toNanos() / 1e6 + "ms p95=" + p95.toNanos() / 1e6 + "ms p99="
+          + p99.toNanos() / 1e6 + "ms max=" + max.toNanos() / 1e6 + "ms";
+    }
+  }
+
+  private static class Samples {
+    long[] values = new long[16];
+    int size = 0;
+
+    void add(long value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+
+      values[size++] = value;
+    }
+  }
+
+  private final Map<String, Map<String, Samples>> samples = new HashMap<String, Map<String, Samples>>();
+
+  @Override
+  public synchronized void onOperation(OperationMetrics metrics) {
+    Map<String, Samples> operation = samples.computeIfAbsent(metrics.operation,
+        (key) -> new LinkedHashMap<String, Samples>());
+
+    operation.computeIfAbsent(TOTAL, (key) -> new Samples()).add(metrics.total.toNanos());
+    metrics.phases.forEach((phase, duration) -> operation.computeIfAbsent(phase, (key) -> new Samples())
+        .add(duration.toNanos()));
+  }
+
+  public synchronized Stats getStats(String operation, String phase) {
+    Map<String, Samples> operationSamples = samples.get(operation);
+    Samples phaseSamples = operationSamples != null ? operationSamples.get(phase) : null;
+
+    if (phaseSamples == null || phaseSamples.size == 0) {
+      return null;
+    }
+
+    long[] sorted = Arrays.copyOf(phaseSamples.values, phaseSamples.size);
+    Arrays.sort(sorted);
+
+    Stats stats = new Stats();
+    stats.count = sorted.length;
+    stats.p50 = Duration.ofNanos(percentile(sorted, 50));
+    stats.p95 = Duration.ofNanos(percentile(sorted, 95));
+    stats.p99 = Duration.ofNanos(percentile(sorted, 99));
+    stats.max = Duration.ofNanos(sorted[sorted.length - 1]);
+
+    return stats;
+  }
+
+  // operation -> phase -> stats, operations sorted by name
+  public synchronized TreeMap<String, LinkedHashMap<String, Stats>> getSummary() {
+    TreeMap<String, LinkedHashMap<String, Stats>> summary = new TreeMap<String, LinkedHashMap<String, Stats>>();
+
+    samples.forEach((operation, phases) -> {
+      LinkedHashMap<String, Stats> phaseStats = new LinkedHashMap<String, Stats>();
+      phases.keySet().forEach((phase) -> phaseStats.put(phase, this.getStats(operation, phase)));
+      summary.put(operation, phaseStats);
+    });
+
+    return summary;
+  }
+
+  public synchronized void reset() {
+    samples.clear();
+  }
+
+  // Nearest rank
+  private static long percentile(long[] sorted, int percentile) {
+    int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+
+    return sorted[Math.max(0, rank - 1)];
+  }
+}
@@ -0,0 +1,174 @@
+package com.mapgrab.selenium.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// In-flight operation, NOOP when neither listeners nor the JFR event are enabled
+public class Operation {
+  static final Operation NOOP = new Operation(null, null, null, false);
+
+  private final MapGrabMetrics metrics;
+  private final OperationMetrics result;
+  private final MapGrabOperationEvent event;
+  private final long startedAt;
+  private long roundTripStartedAt;
+
+  Operation(MapGrabMetrics metrics, String operation, String target, boolean tracing) {
+    this.metrics = metrics;
+    this.startedAt = System.nanoTime();
+
+    if (metrics == null) {
+      this.result = null;
+      this.event = null;
+      return;
+    }
+
+    this.result = new OperationMetrics();
+    result.operation = operation;
+    result.target = target;
+    result.startedAt = startedAt;
+    result.threadId = Thread.currentThread().getId();
+    result.threadName = Thread.currentThread().getName();
+
+    if (tracing) {
+      result.spans = new ArrayList<TraceSpan>();
+    }
+
+    MapGrabOperationEvent event = new MapGrabOperationEvent();
+
+    if (event.isEnabled()) {
+      event.begin();
+      this.event = event;
+    } else {
+      this.event = null;
+    }
+  }
+
+  public boolean isRecording() {
+    return metrics != null;
+  }
+
+  public boolean isTracing() {
+    return metrics != null && result.spans != null;
+  }
+
+  // Repeated phases (multi-hop commands, retries) add up
+  public Operation phase(String name, long nanos) {
+    if (metrics != null) {
+      result.phases.merge(name, Duration.ofNanos(nanos), Duration::plus);
+    }
+
+    return this;
+  }
+
+  // Client phase with known start, becomes a span when tracing
+  public Operation span(String name, long start, long nanos) {
+    this.phase(name, nanos);
+
+    if (this.isTracing()) {
+      result.spans.add(new TraceSpan(name, TraceSpan.Side.CLIENT, start, nanos));
+    }
+
+    return this;
+  }
+
+  public Operation roundTrip(long start, long nanos) {
+    roundTripStartedAt = start;
+
+    return this.span("ROUND_TRIP", start, nanos);
+  }
+
+  // Browser reported spans ({ name, start, duration, step } in ms from the page side
+  // command start), anchored at the start of the last round-trip since page and
+  // client clocks are not comparable
+  public Operation browserSpans(List<?> spans) {
+    if (!this.isTracing() || spans == null) {
+      return this;
+    }
+
+    for (Object entry : spans) {
+      Map<?, ?> span = (Map<?, ?>) entry;
+
+      result.spans.add(new TraceSpan(String.valueOf(span.get("name")),
+          Boolean.TRUE.equals(span.get("step")) ? TraceSpan.Side.BROWSER_STEP : TraceSpan.Side.BROWSER,
+          roundTripStartedAt + millisToNanos(span.get("start")), millisToNanos(span.get("duration"))));
+    }
+
+    return this;
+  }
+
+  public Operation payloadBytes(long payloadBytes) {
+    if (metrics != null) {
+      result.payloadBytes = Math.max(result.payloadBytes, 0) + payloadBytes;
+    }
+
+    return this;
+  }
+
+  public Operation resultCount(int resultCount) {
+    if (metrics != null) {
+      result.resultCount = resultCount;
+    }
+
+    return this;
+  }
+
+  public Operation pollIterations(int pollIterations) {
+    if (metrics != null) {
+      result.pollIterations = pollIterations;
+    }
+
+    return this;
+  }
+
+  public Operation error(Throwable error) {
+    if (metrics != null) {
+      result.error = error;
+    }
+
+    return this;
+  }
+
+  public void finish() {
+    if (metrics == null) {
+      return;
+    }
+
+    result.total = Duration.ofNanos(System.nanoTime() - startedAt);
+
+    if (event != null) {
+      event.end();
+
+      if (event.shouldCommit()) {
+        event.operation = result.operation;
+        event.target = result.target;
+        event.interfaceWait = this.nanos("INTERFACE") + this.nanos("MAP_INTERFACE");
+        event.loadedWait = this.nanos("MAP_LOADED");
+        event.stableWait = this.nanos("MAP_STABLE") + this.nanos("LOCATOR_STABLE") + this.nanos("LOCATORS_STABLE");
+        event.action = this.nanos("ACTION");
+        event.roundTrip = this.nanos("ROUND_TRIP");
+        event.decode = this.nanos("DECODE");
+        event.mouseAction = this.nanos("MOUSE_ACTION");
+        event.payloadBytes = result.payloadBytes;
+        event.resultCount = result.resultCount;
+        event.pollIterations = result.pollIterations;
+        event.error = result.error != null ? result.error.toString() : null;
+        event.commit();
+      }
+    }
+
+    metrics.publish(result);
+  }
+
+  private static long millisToNanos(Object millis) {
+    return (long) (((Number) millis).doubleValue() * 1_000_000);
+  }
+
+  private long nanos(String phase) {
+    Duration duration = result.phases.get(phase);
+
+    return duration != null ? duration.toNanos() : 0;
+  }
+}
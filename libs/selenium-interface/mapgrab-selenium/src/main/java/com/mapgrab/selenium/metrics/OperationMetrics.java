@@ -0,0 +1,27 @@
+package com.mapgrab.selenium.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+public class OperationMetrics {
+  // Command name (query, setView, ...) or mouse action (click, hover, ...)
+  public String operation;
+  // Map id or locator selector
+  public String target;
+  // System.nanoTime() at start
+  public long startedAt;
+  public Duration total;
+  public long threadId;
+  public String threadName;
+  // Browser steps (INTERFACE, MAP_STABLE, ACTION, ...) measured in the page plus
+  // client phases ROUND_TRIP, DECODE, MOUSE_ACTION
+  public LinkedHashMap<String, Duration> phases = new LinkedHashMap<String, Duration>();
+  // Characters of encoded result, -1 when not known
+  public long payloadBytes = -1;
+  public int resultCount = -1;
+  public int pollIterations = -1;
+  public Throwable error;
+  // Timeline of the operation, null unless a listener asks for spans
+  public ArrayList<TraceSpan> spans;
+}
@@ -0,0 +1,24 @@
+package com.mapgrab.selenium.metrics;
+
+public class TraceSpan {
+  public enum Side {
+    CLIENT,
+    // Page side command step (INTERFACE, MAP_STABLE, ACTION, ...)
+    BROWSER_STEP,
+    // Page side work inside a step (query, queryRenderedFeatures, layer resolvers, ...)
+    BROWSER
+  }
+
+  public String name;
+  public Side side;
+  // System.nanoTime() based, browser spans are aligned to the start of their round-trip
+  public long start;
+  public long duration;
+
+  public TraceSpan(String name, Side side, long start, long duration) {
+    this.name = name;
+    this.side = side;
+    this.start = start;
+    this.duration = duration;
+  }
+}
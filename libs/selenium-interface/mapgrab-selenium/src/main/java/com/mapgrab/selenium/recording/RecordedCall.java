@@ -0,0 +1,14 @@
+package com.mapgrab.selenium.recording;
+
+public class RecordedCall {
+  // Index into Recording.scripts
+  public int script;
+  public boolean async;
+  // JSON array of script arguments
+  public String arguments;
+  public Object response;
+  // Simple class name and message when the call threw
+  public String errorType;
+  public String error;
+  public long latencyNanos;
+}
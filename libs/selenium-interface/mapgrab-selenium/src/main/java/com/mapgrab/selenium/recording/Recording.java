@@ -0,0 +1,57 @@
+package com.mapgrab.selenium.recording;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Scripts sent to the browser with arguments, responses and latency. Scripts are
+// stored once and referenced by index, the file is gzipped JSON
+public class Recording {
+  // Selenium returns whole numbers as Long, keep that on read
+  static final ObjectMapper MAPPER = new ObjectMapper()
+      .configure(DeserializationFeature.USE_LONG_FOR_INTS, true);
+
+  public List<String> scripts = new ArrayList<String>();
+  public List<RecordedCall> calls = new ArrayList<RecordedCall>();
+
+  private final Map<String, Integer> scriptIndexes = new HashMap<String, Integer>();
+
+  synchronized void add(String script, RecordedCall call) {
+    call.script = scriptIndexes.computeIfAbsent(script, (key) -> {
+      scripts.add(key);
+
+      return scripts.size() - 1;
+    });
+
+    calls.add(call);
+  }
+
+  public synchronized void write(Path path) throws IOException {
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path))) {
+      MAPPER.writeValue(out, this);
+    }
+  }
+
+  public static Recording read(Path path) throws IOException {
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+      Recording recording = MAPPER.readValue(in, Recording.class);
+
+      for (int i = 0; i < recording.scripts.size(); i++) {
+        recording.scriptIndexes.put(recording.scripts.get(i), i);
+      }
+
+      return recording;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.mapgrab.selenium.recording;
+
+import java.io.UncheckedIOException;
+
+import org.openqa.selenium.JavascriptExecutor;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+// Decorates the executor used by MapGrabContext and records every call, e.g.
+// context.setExecutor(new RecordingJavascriptExecutor((JavascriptExecutor) driver))
+public class RecordingJavascriptExecutor implements JavascriptExecutor {
+  private final JavascriptExecutor delegate;
+  private final Recording recording = new Recording();
+
+  public RecordingJavascriptExecutor(JavascriptExecutor delegate) {
+    this.delegate = delegate;
+  }
+
+  public Recording getRecording() {
+    return recording;
+  }
+
+  @Override
+  public Object executeScript(String script, Object... args) {
+    return this.record(false, script, args);
+  }
+
+  @Override
+  public Object executeAsyncScript(String script, Object... args) {
+    return this.record(true, script, args);
+  }
+
+  private Object record(boolean async, String script, Object[] args) {
+    RecordedCall call = new RecordedCall();
+    call.async = async;
+
+    try {
+      call.arguments = Recording.MAPPER.writeValueAsString(args);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    long startedAt = System.nanoTime();
+
+    try {
+      Object response = async ? delegate.executeAsyncScript(script, args) : delegate.executeScript(script, args);
+      call.response = response;
+
+      return response;
+    } catch (RuntimeException e) {
+      call.errorType = e.getClass().getSimpleName();
+      call.error = e.getMessage();
+
+      throw e;
+    } finally {
+      call.latencyNanos = System.nanoTime() - startedAt;
+      recording.add(script, call);
+    }
+  }
+}
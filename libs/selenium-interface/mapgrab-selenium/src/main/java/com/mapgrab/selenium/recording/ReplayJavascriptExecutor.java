@@ -0,0 +1,140 @@
+package com.mapgrab.selenium.recording;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openqa.selenium.JavascriptException;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.WebDriverException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+// Serves recorded responses without a browser. Calls are matched by script and
+// arguments, ignoring values that differ between runs (remaining timeout budgets
+// of commands and batches, async call ids), same calls are answered in recorded order
+public class ReplayJavascriptExecutor implements JavascriptExecutor {
+  private static final Set<String> VOLATILE_ARGUMENTS = Set.of("timeout", "callId", "slice", "budgets",
+      "waitTimeout");
+
+  private final Map<String, ArrayDeque<RecordedCall>> calls = new HashMap<String, ArrayDeque<RecordedCall>>();
+  private final ReplayTiming timing;
+
+  public ReplayJavascriptExecutor(Recording recording, ReplayTiming timing) {
+    this.timing = timing;
+
+    for (RecordedCall call : recording.calls) {
+      String key = this.key(call.async, recording.scripts.get(call.script), this.normalize(call.arguments));
+      calls.computeIfAbsent(key, (k) -> new ArrayDeque<RecordedCall>()).add(call);
+    }
+  }
+
+  public static ReplayJavascriptExecutor load(Path path, ReplayTiming timing) {
+    try {
+      return new ReplayJavascriptExecutor(Recording.read(path), timing);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public synchronized int remaining() {
+    return calls.values().stream().mapToInt(ArrayDeque::size).sum();
+  }
+
+  @Override
+  public Object executeScript(String script, Object... args) {
+    return this.replay(false, script, args);
+  }
+
+  @Override
+  public Object executeAsyncScript(String script, Object... args) {
+    return this.replay(true, script, args);
+  }
+
+  private Object replay(boolean async, String script, Object[] args) {
+    RecordedCall call;
+
+    try {
+      call = this.next(this.key(async, script, this.normalize(Recording.MAPPER.writeValueAsString(args))));
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    if (timing == ReplayTiming.RECORDED) {
+      LockSupport.parkNanos(call.latencyNanos);
+    }
+
+    if (call.errorType != null) {
+      throw switch (call.errorType) {
+        case "ScriptTimeoutException" -> new ScriptTimeoutException(call.error);
+        case "JavascriptException" -> new JavascriptException(call.error);
+        default -> new WebDriverException(call.error);
+      };
+    }
+
+    return call.response;
+  }
+
+  private synchronized RecordedCall next(String key) {
+    ArrayDeque<RecordedCall> queue = calls.get(key);
+
+    if (queue == null || queue.isEmpty()) {
+      throw new ReplayMismatchError("No recorded response left for script call: "
+          + key.substring(0, Math.min(key.length(), 300)));
+    }
+
+    return queue.poll();
+  }
+
+  private String key(boolean async, String script, String arguments) {
+    return (async ? "async:" : "sync:") + arguments + ":" + script;
+  }
+
+  private String normalize(String arguments) {
+    try {
+      return Recording.MAPPER.writeValueAsString(this.normalize(Recording.MAPPER.readTree(arguments)));
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Commands pass arguments as JSON strings (batches nest them), so strings holding
+  // JSON objects or arrays are normalized as well
+  private JsonNode normalize(JsonNode node) {
+    if (node instanceof ObjectNode object) {
+      object.remove(VOLATILE_ARGUMENTS);
+
+      Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+
+      while (fields.hasNext()) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        field.setValue(this.normalize(field.getValue()));
+      }
+    } else if (node instanceof ArrayNode array) {
+      for (int i = 0; i < array.size(); i++) {
+        array.set(i, this.normalize(array.get(i)));
+      }
+    } else if (node instanceof TextNode text && (text.textValue().startsWith("{") || text.textValue().startsWith("["))) {
+      try {
+        JsonNode nested = this.normalize(Recording.MAPPER.readTree(text.textValue()));
+
+        return new TextNode(Recording.MAPPER.writeValueAsString(nested));
+      } catch (JsonProcessingException e) {
+        return node;
+      }
+    }
+
+    return node;
+  }
+}
@@ -0,0 +1,9 @@
+package com.mapgrab.selenium.recording;
+
+import org.openqa.selenium.WebDriverException;
+
+public class ReplayMismatchError extends WebDriverException {
+  public ReplayMismatchError(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,8 @@
+package com.mapgrab.selenium.recording;
+
+public enum ReplayTiming {
+  // Sleep the recorded latency before answering
+  RECORDED,
+  // Answer immediately, measures client side cost only
+  ZERO
+}
@@ -0,0 +1,317 @@
+package com.mapgrab.selenium.screenshot;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Baselines stored once per content (objects/ab/cdef....png, SHA-256 of the PNG
+// bytes), names (test, branch, ...) point to content through the refs file. The
+// index file keeps hash, size and perceptual hash of every object and is memory
+// mapped, so comparisons against an identical capture or a perceptual lookup never
+// decode a baseline PNG. Meant for a single writing process
+public class BaselineStore implements AutoCloseable {
+  public static class Entry {
+    public String contentHash;
+    public int width;
+    public int height;
+    public long perceptualHash;
+  }
+
+  private static final int MAGIC = 0x4D474249; // MGBI
+  private static final int HEADER_SIZE = 16;
+  // 32 bytes SHA-256, width, height, perceptual hash
+  private static final int RECORD_SIZE = 32 + 4 + 4 + 8;
+
+  private final Path root;
+  private final FileChannel indexChannel;
+  private MappedByteBuffer index;
+  private int count;
+  private final HashMap<String, Integer> records = new HashMap<String, Integer>();
+  private final TreeMap<String, String> refs = new TreeMap<String, String>();
+  private final PngDecoder decoder = new PngDecoder();
+  private MapImageDiff diff = new MapImageDiff();
+  private boolean updateBaselines = false;
+  // Perceptual distance below which a capture is accepted without decoding the
+  // baseline, -1 = always run the pixel diff
+  private int perceptualMatchDistance = -1;
+
+  private BaselineStore(Path root) throws IOException {
+    this.root = root;
+    Files.createDirectories(root.resolve("objects"));
+
+    indexChannel = FileChannel.open(root.resolve("index.bin"), StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+
+    if (indexChannel.size() == 0) {
+      this.map(64);
+      index.putInt(0, MAGIC);
+      index.putInt(4, 1);
+      index.putInt(8, 0);
+    } else {
+      this.map((int) ((indexChannel.size() - HEADER_SIZE) / RECORD_SIZE));
+
+      if (index.getInt(0) != MAGIC) {
+        throw new IOException("Not a baseline index: " + root.resolve("index.bin"));
+      }
+    }
+
+    count = index.getInt(8);
+
+    for (int record = 0; record < count; record++) {
+      records.put(this.contentHash(record), record);
+    }
+
+    Path refsFile = root.resolve("refs.tsv");
+
+    if (Files.exists(refsFile)) {
+      for (String line : Files.readAllLines(refsFile, StandardCharsets.UTF_8)) {
+        int tab = line.lastIndexOf('\t');
+
+        if (tab > 0) {
+          refs.put(line.substring(0, tab), line.substring(tab + 1));
+        }
+      }
+    }
+  }
+
+  public static BaselineStore open(Path root) {
+    try {
+      return new BaselineStore(root);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public BaselineStore diff(MapImageDiff diff) {
+    this.diff = diff;
+
+    return this;
+  }
+
+  // Overwrite baselines with the captures instead of comparing
+  public BaselineStore updateBaselines(boolean updateBaselines) {
+    this.updateBaselines = updateBaselines;
+
+    return this;
+  }
+
+  public BaselineStore perceptualMatchDistance(int perceptualMatchDistance) {
+    this.perceptualMatchDistance = perceptualMatchDistance;
+
+    return this;
+  }
+
+  public synchronized Entry get(String name) {
+    String contentHash = refs.get(name);
+    Integer record = contentHash != null ? records.get(contentHash) : null;
+
+    return record != null ? this.entry(record) : null;
+  }
+
+  public Path getPath(Entry entry) {
+    return root.resolve("objects").resolve(entry.contentHash.substring(0, 2))
+        .resolve(entry.contentHash.substring(2) + ".png");
+  }
+
+  public byte[] read(Entry entry) {
+    try {
+      return Files.readAllBytes(this.getPath(entry));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Stores the PNG under the name, content already in the store is not written again
+  public synchronized Entry put(String name, byte[] png) {
+    String contentHash = sha256(png);
+    Integer record = records.get(contentHash);
+
+    try {
+      if (record == null) {
+        BufferedImage image = ScreenshotCapturer.toImage(png);
+        Entry entry = new Entry();
+        entry.contentHash = contentHash;
+        entry.width = image.getWidth();
+        entry.height = image.getHeight();
+        entry.perceptualHash = PerceptualHash.of(image);
+
+        Path path = this.getPath(entry);
+        Files.createDirectories(path.getParent());
+        Path temporary = Files.createTempFile(path.getParent(), "baseline", ".tmp");
+        Files.write(temporary, png);
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        record = this.append(entry);
+      }
+
+      if (!contentHash.equals(refs.put(name, contentHash))) {
+        this.writeRefs();
+      }
+
+      return this.entry(record);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Known baselines perceptually close to the image, closest first
+  public synchronized List<Entry> findSimilar(BufferedImage image, int maxDistance) {
+    long perceptualHash = PerceptualHash.of(image);
+    ArrayList<Entry> similar = new ArrayList<Entry>();
+
+    for (int record = 0; record < count; record++) {
+      if (PerceptualHash.distance(perceptualHash, this.perceptualHash(record)) <= maxDistance) {
+        similar.add(this.entry(record));
+      }
+    }
+
+    similar.sort((a, b) -> Integer.compare(PerceptualHash.distance(perceptualHash, a.perceptualHash),
+        PerceptualHash.distance(perceptualHash, b.perceptualHash)));
+
+    return similar;
+  }
+
+  // Compares a capture with the named baseline. Missing baselines (or all of them
+  // in update mode) are stored from the capture and reported as new
+  public ImageDiffResult verify(String name, byte[] png) {
+    Entry baseline = this.get(name);
+
+    if (baseline == null || updateBaselines) {
+      this.put(name, png);
+
+      return this.newBaselineResult();
+    }
+
+    // Byte identical capture, nothing to decode
+    if (baseline.contentHash.equals(sha256(png))) {
+      ImageDiffResult result = new ImageDiffResult();
+      result.matches = true;
+      result.complete = true;
+
+      return result;
+    }
+
+    BufferedImage actual = ScreenshotCapturer.toImage(png);
+
+    // Accepted on the perceptual hash alone, no regions are known
+    if (perceptualMatchDistance >= 0 && actual.getWidth() == baseline.width && actual.getHeight() == baseline.height
+        && PerceptualHash.distance(PerceptualHash.of(actual), baseline.perceptualHash) <= perceptualMatchDistance) {
+      ImageDiffResult result = new ImageDiffResult();
+      result.matches = true;
+      result.complete = false;
+
+      return result;
+    }
+
+    synchronized (decoder) {
+      return diff.compare(decoder.decode(this.read(baseline)), actual);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      index.force();
+      indexChannel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private ImageDiffResult newBaselineResult() {
+    ImageDiffResult result = new ImageDiffResult();
+    result.matches = true;
+    result.complete = true;
+    result.newBaseline = true;
+
+    return result;
+  }
+
+  private int append(Entry entry) throws IOException {
+    if (HEADER_SIZE + (long) (count + 1) * RECORD_SIZE > index.capacity()) {
+      this.map(Math.max(64, count * 2));
+    }
+
+    int offset = HEADER_SIZE + count * RECORD_SIZE;
+    byte[] contentHash = HexFormat.of().parseHex(entry.contentHash);
+
+    index.put(offset, contentHash);
+    index.putInt(offset + 32, entry.width);
+    index.putInt(offset + 36, entry.height);
+    index.putLong(offset + 40, entry.perceptualHash);
+    records.put(entry.contentHash, count);
+    count++;
+    // Count last, a crash leaves at most an unused record
+    index.putInt(8, count);
+
+    return count - 1;
+  }
+
+  private void map(int capacity) throws IOException {
+    index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+    index.order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private Entry entry(int record) {
+    int offset = HEADER_SIZE + record * RECORD_SIZE;
+    Entry entry = new Entry();
+    entry.contentHash = this.contentHash(record);
+    entry.width = index.getInt(offset + 32);
+    entry.height = index.getInt(offset + 36);
+    entry.perceptualHash = index.getLong(offset + 40);
+
+    return entry;
+  }
+
+  private String contentHash(int record) {
+    byte[] contentHash = new byte[32];
+    index.get(HEADER_SIZE + record * RECORD_SIZE, contentHash);
+
+    return HexFormat.of().formatHex(contentHash);
+  }
+
+  private long perceptualHash(int record) {
+    return index.getLong(HEADER_SIZE + record * RECORD_SIZE + 40);
+  }
+
+  private void writeRefs() throws IOException {
+    Path temporary = Files.createTempFile(root, "refs", ".tmp");
+
+    try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+      for (Map.Entry<String, String> ref : refs.entrySet()) {
+        writer.write(ref.getKey());
+        writer.write('\t');
+        writer.write(ref.getValue());
+        writer.newLine();
+      }
+    }
+
+    Files.move(temporary, root.resolve("refs.tsv"), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static String sha256(byte[] bytes) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package com.mapgrab.selenium.screenshot;
+
+import java.util.ArrayList;
+
+import com.mapgrab.selenium.BoundingBox;
+
+public class ImageDiffResult {
+  public boolean matches;
+  public long differentPixels;
+  // False when the comparison stopped once the threshold was exceeded, differentPixels
+  // and regions then only cover the tiles compared until then
+  public boolean complete;
+  // Connected areas of differing tiles, bounds are tight around the differing pixels
+  public ArrayList<BoundingBox> regions = new ArrayList<BoundingBox>();
+  // Set by BaselineStore.verify when the capture was stored as the baseline
+  public boolean newBaseline;
+}
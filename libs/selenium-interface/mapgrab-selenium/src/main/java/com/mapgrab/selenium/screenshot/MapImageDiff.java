@@ -0,0 +1,355 @@
+package com.mapgrab.selenium.screenshot;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import com.mapgrab.selenium.BoundingBox;
+
+// Compares two rasters tile by tile on a fork-join pool. Equal tile rows are
+// skipped with Arrays.equals (vectorized), only tiles with changed rows are
+// compared pixel by pixel. Pixels that differ only by anti-aliasing (label and
+// line edges, detected as in pixelmatch) are not counted. Once more pixels than
+// the threshold differ the remaining tiles are skipped
+public class MapImageDiff {
+  private int tileSize = 64;
+  private int colorTolerance = 8;
+  private boolean antiAliasing = true;
+  private long threshold = 0;
+  private boolean exhaustive = false;
+  private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+  public MapImageDiff tileSize(int tileSize) {
+    if (tileSize <= 0) {
+      throw new IllegalArgumentException("tileSize must be positive: " + tileSize);
+    }
+
+    this.tileSize = tileSize;
+
+    return this;
+  }
+
+  // Max difference per color channel (0-255) for pixels to be considered equal
+  public MapImageDiff colorTolerance(int colorTolerance) {
+    this.colorTolerance = colorTolerance;
+
+    return this;
+  }
+
+  public MapImageDiff antiAliasing(boolean antiAliasing) {
+    this.antiAliasing = antiAliasing;
+
+    return this;
+  }
+
+  // Number of differing pixels still accepted as a match
+  public MapImageDiff threshold(long threshold) {
+    this.threshold = threshold;
+
+    return this;
+  }
+
+  // Compare all tiles even after the threshold is exceeded, to get every diff region
+  public MapImageDiff exhaustive(boolean exhaustive) {
+    this.exhaustive = exhaustive;
+
+    return this;
+  }
+
+  public MapImageDiff pool(ForkJoinPool pool) {
+    this.pool = pool;
+
+    return this;
+  }
+
+  public ImageDiffResult compare(byte[] expectedPng, byte[] actualPng) {
+    return this.compare(ScreenshotCapturer.toImage(expectedPng), ScreenshotCapturer.toImage(actualPng));
+  }
+
+  public ImageDiffResult compare(BufferedImage expected, BufferedImage actual) {
+    ImageDiffResult result = new ImageDiffResult();
+
+    if (expected.getWidth() != actual.getWidth() || expected.getHeight() != actual.getHeight()) {
+      int width = Math.max(expected.getWidth(), actual.getWidth());
+      int height = Math.max(expected.getHeight(), actual.getHeight());
+
+      result.differentPixels = (long) width * height;
+      result.complete = true;
+      result.regions.add(new BoundingBox(0, 0, width, height));
+
+      return result;
+    }
+
+    int width = expected.getWidth();
+    int height = expected.getHeight();
+    int[] expectedPixels = pixels(expected);
+    int[] actualPixels = pixels(actual);
+    // Or-ed into every pixel, images without alpha are compared as opaque
+    int alpha = expected.getColorModel().hasAlpha() && actual.getColorModel().hasAlpha() ? 0 : 0xFF000000;
+
+    int columns = (width + tileSize - 1) / tileSize;
+    int rows = (height + tileSize - 1) / tileSize;
+    AtomicLong differentPixels = new AtomicLong();
+    AtomicInteger comparedTiles = new AtomicInteger();
+    // minX, minY, maxX, maxY of differing pixels per tile, minX = -1 for equal tiles
+    int[] tileBounds = new int[columns * rows * 4];
+    Arrays.fill(tileBounds, -1);
+
+    try {
+      pool.submit(() -> IntStream.range(0, columns * rows).parallel().forEach((tile) -> {
+        if (!exhaustive && differentPixels.get() > threshold) {
+          return;
+        }
+
+        long count = this.compareTile(expectedPixels, actualPixels, alpha, width, height, tile % columns * tileSize,
+            tile / columns * tileSize, tileBounds, tile * 4);
+        comparedTiles.incrementAndGet();
+
+        if (count > 0) {
+          differentPixels.addAndGet(count);
+        }
+      })).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Image comparison interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Image comparison failed", e.getCause());
+    }
+
+    result.differentPixels = differentPixels.get();
+    result.matches = result.differentPixels <= threshold;
+    result.complete = comparedTiles.get() == columns * rows;
+    result.regions = regions(tileBounds, columns, rows);
+
+    return result;
+  }
+
+  private long compareTile(int[] expected, int[] actual, int alpha, int width, int height, int tileX, int tileY,
+      int[] tileBounds, int boundsOffset) {
+    int tileRight = Math.min(tileX + tileSize, width);
+    int tileBottom = Math.min(tileY + tileSize, height);
+    long count = 0;
+
+    for (int y = tileY; y < tileBottom; y++) {
+      int row = y * width;
+
+      if (Arrays.equals(expected, row + tileX, row + tileRight, actual, row + tileX,
+          row + tileRight)) {
+        continue;
+      }
+
+      for (int x = tileX; x < tileRight; x++) {
+        int position = row + x;
+
+        if (this.isSimilar(expected[position] | alpha, actual[position] | alpha)) {
+          continue;
+        }
+
+        if (antiAliasing && (antialiased(expected, actual, alpha, x, y, width, height)
+            || antialiased(actual, expected, alpha, x, y, width, height))) {
+          continue;
+        }
+
+        count++;
+
+        if (tileBounds[boundsOffset] == -1) {
+          tileBounds[boundsOffset] = x;
+          tileBounds[boundsOffset + 1] = y;
+          tileBounds[boundsOffset + 2] = x;
+          tileBounds[boundsOffset + 3] = y;
+        } else {
+          tileBounds[boundsOffset] = Math.min(tileBounds[boundsOffset], x);
+          tileBounds[boundsOffset + 2] = Math.max(tileBounds[boundsOffset + 2], x);
+          tileBounds[boundsOffset + 3] = y;
+        }
+      }
+    }
+
+    return count;
+  }
+
+  private boolean isSimilar(int a, int b) {
+    if (a == b) {
+      return true;
+    }
+
+    return Math.abs(((a >>> 24) & 0xFF) - ((b >>> 24) & 0xFF)) <= colorTolerance
+        && Math.abs(((a >>> 16) & 0xFF) - ((b >>> 16) & 0xFF)) <= colorTolerance
+        && Math.abs(((a >>> 8) & 0xFF) - ((b >>> 8) & 0xFF)) <= colorTolerance
+        && Math.abs((a & 0xFF) - (b & 0xFF)) <= colorTolerance;
+  }
+
+  // Pixel on a gradient edge (has both darker and brighter neighbours) whose darkest
+  // or brightest neighbour is inside a flat area in both images
+  private static boolean antialiased(int[] image, int[] other, int alpha, int x1, int y1, int width, int height) {
+    int x0 = Math.max(x1 - 1, 0);
+    int y0 = Math.max(y1 - 1, 0);
+    int x2 = Math.min(x1 + 1, width - 1);
+    int y2 = Math.min(y1 + 1, height - 1);
+    int pixel = image[y1 * width + x1] | alpha;
+    double brightness = brightness(pixel);
+    int zeroes = x1 == x0 || x1 == x2 || y1 == y0 || y1 == y2 ? 1 : 0;
+    double min = 0;
+    double max = 0;
+    int minX = 0;
+    int minY = 0;
+    int maxX = 0;
+    int maxY = 0;
+
+    for (int x = x0; x <= x2; x++) {
+      for (int y = y0; y <= y2; y++) {
+        if (x == x1 && y == y1) {
+          continue;
+        }
+
+        double delta = brightness - brightness(image[y * width + x] | alpha);
+
+        if (delta == 0) {
+          zeroes++;
+
+          if (zeroes > 2) {
+            return false;
+          }
+        } else if (delta < min) {
+          min = delta;
+          minX = x;
+          minY = y;
+        } else if (delta > max) {
+          max = delta;
+          maxX = x;
+          maxY = y;
+        }
+      }
+    }
+
+    if (min == 0 || max == 0) {
+      return false;
+    }
+
+    return (hasManySiblings(image, alpha, minX, minY, width, height)
+        && hasManySiblings(other, alpha, minX, minY, width, height))
+        || (hasManySiblings(image, alpha, maxX, maxY, width, height)
+            && hasManySiblings(other, alpha, maxX, maxY, width, height));
+  }
+
+  private static boolean hasManySiblings(int[] image, int alpha, int x1, int y1, int width, int height) {
+    int x0 = Math.max(x1 - 1, 0);
+    int y0 = Math.max(y1 - 1, 0);
+    int x2 = Math.min(x1 + 1, width - 1);
+    int y2 = Math.min(y1 + 1, height - 1);
+    int pixel = image[y1 * width + x1] | alpha;
+    int zeroes = x1 == x0 || x1 == x2 || y1 == y0 || y1 == y2 ? 1 : 0;
+
+    for (int x = x0; x <= x2; x++) {
+      for (int y = y0; y <= y2; y++) {
+        if ((x != x1 || y != y1) && (image[y * width + x] | alpha) == pixel) {
+          zeroes++;
+
+          if (zeroes > 2) {
+            return true;
+          }
+        }
+      }
+    }
+
+    return false;
+  }
+
+  // Luma of the pixel blended over white
+  private static double brightness(int argb) {
+    double alpha = ((argb >>> 24) & 0xFF) / 255.0;
+    double r = 255 + (((argb >>> 16) & 0xFF) - 255) * alpha;
+    double g = 255 + (((argb >>> 8) & 0xFF) - 255) * alpha;
+    double b = 255 + ((argb & 0xFF) - 255) * alpha;
+
+    return r * 0.29889531 + g * 0.58662247 + b * 0.11448223;
+  }
+
+  // Differing tiles touching each other (8-neighbourhood) form one region
+  private static ArrayList<BoundingBox> regions(int[] tileBounds, int columns, int rows) {
+    ArrayList<BoundingBox> regions = new ArrayList<BoundingBox>();
+    boolean[] visited = new boolean[columns * rows];
+    int[] stack = new int[columns * rows];
+
+    for (int start = 0; start < columns * rows; start++) {
+      if (visited[start] || tileBounds[start * 4] == -1) {
+        continue;
+      }
+
+      int minX = Integer.MAX_VALUE;
+      int minY = Integer.MAX_VALUE;
+      int maxX = Integer.MIN_VALUE;
+      int maxY = Integer.MIN_VALUE;
+      int stackSize = 0;
+      stack[stackSize++] = start;
+      visited[start] = true;
+
+      while (stackSize > 0) {
+        int tile = stack[--stackSize];
+        minX = Math.min(minX, tileBounds[tile * 4]);
+        minY = Math.min(minY, tileBounds[tile * 4 + 1]);
+        maxX = Math.max(maxX, tileBounds[tile * 4 + 2]);
+        maxY = Math.max(maxY, tileBounds[tile * 4 + 3]);
+
+        int column = tile % columns;
+        int row = tile / columns;
+
+        for (int neighbourRow = Math.max(0, row - 1); neighbourRow <= Math.min(rows - 1, row + 1); neighbourRow++) {
+          for (int neighbourColumn = Math.max(0, column - 1); neighbourColumn <= Math.min(columns - 1, column + 1);
+              neighbourColumn++) {
+            int neighbour = neighbourRow * columns + neighbourColumn;
+
+            if (!visited[neighbour] && tileBounds[neighbour * 4] != -1) {
+              visited[neighbour] = true;
+              stack[stackSize++] = neighbour;
+            }
+          }
+        }
+      }
+
+      regions.add(new BoundingBox(minX, minY, maxX - minX + 1, maxY - minY + 1));
+    }
+
+    return regions;
+  }
+
+  private static int[] pixels(BufferedImage image) {
+    int type = image.getType();
+
+    if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+        && image.getRaster().getDataBuffer() instanceof DataBufferInt buffer && buffer.getNumBanks() == 1
+        && image.getRaster().getParent() == null) {
+      return buffer.getData();
+    }
+
+    // ImageIO decodes PNGs to ABGR / BGR byte rasters, unpacked here instead of getRGB
+    if ((type == BufferedImage.TYPE_4BYTE_ABGR || type == BufferedImage.TYPE_3BYTE_BGR)
+        && image.getRaster().getDataBuffer() instanceof DataBufferByte buffer && buffer.getNumBanks() == 1
+        && image.getRaster().getParent() == null) {
+      boolean hasAlpha = type == BufferedImage.TYPE_4BYTE_ABGR;
+      int stride = hasAlpha ? 4 : 3;
+      byte[] data = buffer.getData();
+      int[] pixels = new int[image.getWidth() * image.getHeight()];
+
+      if (data.length == pixels.length * stride) {
+        for (int i = 0, offset = 0; i < pixels.length; i++, offset += stride) {
+          int a = hasAlpha ? data[offset] & 0xFF : 0xFF;
+          int blue = hasAlpha ? offset + 1 : offset;
+
+          pixels[i] = a << 24 | (data[blue + 2] & 0xFF) << 16 | (data[blue + 1] & 0xFF) << 8 | (data[blue] & 0xFF);
+        }
+
+        return pixels;
+      }
+    }
+
+    return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+  }
+}
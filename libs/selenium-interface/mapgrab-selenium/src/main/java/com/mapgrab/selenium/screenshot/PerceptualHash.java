@@ -0,0 +1,49 @@
+package com.mapgrab.selenium.screenshot;
+
+import java.awt.image.BufferedImage;
+
+// 64 bit difference hash (dHash): the image is box sampled to 9x8 luma cells and
+// each bit tells whether a cell is brighter than its right neighbour. Close images
+// have a small Hamming distance, unrelated ones around 32
+public class PerceptualHash {
+  private PerceptualHash() {
+  }
+
+  public static long of(BufferedImage image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    double[] cells = new double[9 * 8];
+    int[] counts = new int[9 * 8];
+    int[] row = new int[width];
+
+    for (int y = 0; y < height; y++) {
+      image.getRGB(0, y, width, 1, row, 0, width);
+      int cellY = y * 8 / height;
+
+      for (int x = 0; x < width; x++) {
+        int argb = row[x];
+        int cell = cellY * 9 + x * 9 / width;
+
+        cells[cell] += ((argb >>> 16) & 0xFF) * 0.299 + ((argb >>> 8) & 0xFF) * 0.587 + (argb & 0xFF) * 0.114;
+        counts[cell]++;
+      }
+    }
+
+    long hash = 0;
+
+    for (int y = 0; y < 8; y++) {
+      for (int x = 0; x < 8; x++) {
+        double left = cells[y * 9 + x] / Math.max(1, counts[y * 9 + x]);
+        double right = cells[y * 9 + x + 1] / Math.max(1, counts[y * 9 + x + 1]);
+
+        hash = (hash << 1) | (left > right ? 1 : 0);
+      }
+    }
+
+    return hash;
+  }
+
+  public static int distance(long a, long b) {
+    return Long.bitCount(a ^ b);
+  }
+}
@@ -0,0 +1,53 @@
+package com.mapgrab.selenium.screenshot;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+
+// Decodes screenshots of the same size into one reused image, so repeated captures
+// of a locator do not allocate a new raster each time. The returned image is
+// overwritten by the next decode, copy it to keep it
+public class PngDecoder {
+  private final ImageReader reader = ImageIO.getImageReadersByFormatName("png").next();
+  private BufferedImage destination;
+
+  public synchronized BufferedImage decode(byte[] png) {
+    try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(png))) {
+      reader.setInput(input, true, true);
+
+      ImageReadParam param = reader.getDefaultReadParam();
+
+      if (this.canReuse(reader.getWidth(0), reader.getHeight(0), reader.getImageTypes(0))) {
+        param.setDestination(destination);
+      }
+
+      destination = reader.read(0, param);
+
+      return destination;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      reader.setInput(null);
+    }
+  }
+
+  private boolean canReuse(int width, int height, Iterator<ImageTypeSpecifier> types) {
+    if (destination == null || destination.getWidth() != width || destination.getHeight() != height
+        || !types.hasNext()) {
+      return false;
+    }
+
+    ImageTypeSpecifier type = types.next();
+
+    return type.getBufferedImageType() != BufferedImage.TYPE_CUSTOM
+        && type.getBufferedImageType() == destination.getType();
+  }
+}
@@ -0,0 +1,111 @@
+package com.mapgrab.selenium.screenshot;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chromium.HasCdp;
+
+import com.mapgrab.selenium.BoundingBox;
+import com.mapgrab.selenium.MapGrabContext;
+import com.mapgrab.selenium.command.MapGrabCommand;
+
+// Captures a rect of the page (root window viewport coordinates). Chromium drivers
+// capture only the clip through Page.captureScreenshot, other drivers fall back to a
+// full screenshot cropped in Java
+public class ScreenshotCapturer {
+  public static class Viewport {
+    public double scrollX;
+    public double scrollY;
+    public double devicePixelRatio;
+  }
+
+  // Two frames so pending map renders are painted before the capture
+  private static final MapGrabCommand AWAIT_REPAINT = MapGrabCommand.forPage("awaitRepaint")
+      .perform("""
+          new Promise((resolve) =>
+            requestAnimationFrame(() =>
+              requestAnimationFrame(() => {
+                let top = window;
+
+                try {
+                  top = window.top.scrollX != null ? window.top : window;
+                } catch (e) {
+                  // Cross origin parent, scroll of the current frame is the best guess
+                }
+
+                resolve({ scrollX: top.scrollX, scrollY: top.scrollY, devicePixelRatio: window.devicePixelRatio });
+              })
+            )
+          )""");
+
+  private final MapGrabContext context;
+
+  public ScreenshotCapturer(MapGrabContext context) {
+    this.context = context;
+  }
+
+  public byte[] capturePng(BoundingBox rect) {
+    if (rect.width <= 0 || rect.height <= 0) {
+      throw new IllegalArgumentException("Screenshot clip is empty: " + rect.width + "x" + rect.height);
+    }
+
+    Viewport viewport = context.getCommandRunner().query(AWAIT_REPAINT, (String) null, Viewport.class);
+    WebDriver driver = context.getDriver();
+
+    if (driver instanceof HasCdp cdp) {
+      // Clip is in CSS pixels of the document, not the viewport
+      Map<String, Object> clip = Map.of(
+          "x", rect.x + viewport.scrollX,
+          "y", rect.y + viewport.scrollY,
+          "width", rect.width,
+          "height", rect.height,
+          "scale", 1);
+
+      Map<String, Object> response = cdp.executeCdpCommand("Page.captureScreenshot",
+          Map.of("format", "png", "clip", clip, "captureBeyondViewport", false, "fromSurface", true));
+
+      return Base64.getDecoder().decode((String) response.get("data"));
+    }
+
+    return this.crop(((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES), rect, viewport.devicePixelRatio);
+  }
+
+  public static BufferedImage toImage(byte[] png) {
+    try {
+      return ImageIO.read(new ByteArrayInputStream(png));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private byte[] crop(byte[] png, BoundingBox rect, double devicePixelRatio) {
+    try {
+      BufferedImage page = toImage(png);
+      int x = Math.max(0, (int) Math.round(rect.x * devicePixelRatio));
+      int y = Math.max(0, (int) Math.round(rect.y * devicePixelRatio));
+      int width = Math.min(page.getWidth() - x, (int) Math.round(rect.width * devicePixelRatio));
+      int height = Math.min(page.getHeight() - y, (int) Math.round(rect.height * devicePixelRatio));
+
+      if (width <= 0 || height <= 0) {
+        throw new IllegalArgumentException("Screenshot clip is outside of the viewport");
+      }
+
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      ImageIO.write(page.getSubimage(x, y, width, height), "png", output);
+
+      return output.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
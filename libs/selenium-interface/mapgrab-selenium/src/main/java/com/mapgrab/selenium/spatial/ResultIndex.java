@@ -0,0 +1,329 @@
+package com.mapgrab.selenium.spatial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.mapgrab.selenium.BoundingBox;
+import com.mapgrab.selenium.Result;
+
+// Static packed Hilbert R-tree over result display rects (flatbush layout): items
+// are sorted by the Hilbert value of their center and packed bottom up into nodes
+// of NODE_SIZE children, all boxes live in one int array. Build is O(n log n),
+// queries touch O(log n) nodes. Rects are inclusive, a point on the edge hits
+public class ResultIndex<T extends Result> {
+  private static final int NODE_SIZE = 16;
+
+  private final List<? extends T> results;
+  // minX, minY, maxX, maxY per item (first results.size() entries) and per node
+  private final int[] boxes;
+  // Result index for items, first child position for nodes
+  private final int[] children;
+  // Start of each tree level in boxes/children, root is the last one
+  private final int[] levelBounds;
+
+  private ResultIndex(List<? extends T> results, int[] boxes, int[] children, int[] levelBounds) {
+    this.results = results;
+    this.boxes = boxes;
+    this.children = children;
+    this.levelBounds = levelBounds;
+  }
+
+  public static <T extends Result> ResultIndex<T> of(List<? extends T> results) {
+    int count = results.size();
+
+    // Level sizes to size the arrays up front
+    ArrayList<Integer> levels = new ArrayList<Integer>();
+    int levelSize = count;
+    int total = count;
+    levels.add(count);
+
+    // At least one node above the items, even for a single result
+    do {
+      levelSize = (levelSize + NODE_SIZE - 1) / NODE_SIZE;
+      total += levelSize;
+      levels.add(total);
+    } while (levelSize > 1);
+
+    int[] levelBounds = levels.stream().mapToInt(Integer::intValue).toArray();
+    int[] boxes = new int[total * 4];
+    int[] children = new int[total];
+
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
+
+    for (int i = 0; i < count; i++) {
+      BoundingBox rect = results.get(i).getDisplay();
+      boxes[i * 4] = rect.x;
+      boxes[i * 4 + 1] = rect.y;
+      boxes[i * 4 + 2] = rect.right;
+      boxes[i * 4 + 3] = rect.bottom;
+      children[i] = i;
+
+      minX = Math.min(minX, rect.x);
+      minY = Math.min(minY, rect.y);
+      maxX = Math.max(maxX, rect.right);
+      maxY = Math.max(maxY, rect.bottom);
+    }
+
+    if (count > NODE_SIZE) {
+      long[] hilbertValues = new long[count];
+      double scaleX = 65535.0 / Math.max(1, (long) maxX - minX);
+      double scaleY = 65535.0 / Math.max(1, (long) maxY - minY);
+
+      for (int i = 0; i < count; i++) {
+        int centerX = (int) ((((long) boxes[i * 4] + boxes[i * 4 + 2]) / 2.0 - minX) * scaleX);
+        int centerY = (int) ((((long) boxes[i * 4 + 1] + boxes[i * 4 + 3]) / 2.0 - minY) * scaleY);
+        // Hilbert value in the high bits, item position in the low 31 bits keeps the sort stable
+        hilbertValues[i] = (Integer.toUnsignedLong(hilbert(centerX, centerY)) << 31) | i;
+      }
+
+      Arrays.sort(hilbertValues);
+
+      int[] sortedBoxes = new int[count * 4];
+
+      for (int i = 0; i < count; i++) {
+        int item = (int) (hilbertValues[i] & Integer.MAX_VALUE);
+        System.arraycopy(boxes, item * 4, sortedBoxes, i * 4, 4);
+        children[i] = item;
+      }
+
+      System.arraycopy(sortedBoxes, 0, boxes, 0, count * 4);
+    }
+
+    // Pack each level into parents of NODE_SIZE children
+    int position = 0;
+
+    for (int level = 0; level < levelBounds.length - 1; level++) {
+      int end = levelBounds[level];
+      int parent = end;
+
+      while (position < end) {
+        int nodeMinX = Integer.MAX_VALUE;
+        int nodeMinY = Integer.MAX_VALUE;
+        int nodeMaxX = Integer.MIN_VALUE;
+        int nodeMaxY = Integer.MIN_VALUE;
+        int firstChild = position;
+
+        for (int i = 0; i < NODE_SIZE && position < end; i++, position++) {
+          nodeMinX = Math.min(nodeMinX, boxes[position * 4]);
+          nodeMinY = Math.min(nodeMinY, boxes[position * 4 + 1]);
+          nodeMaxX = Math.max(nodeMaxX, boxes[position * 4 + 2]);
+          nodeMaxY = Math.max(nodeMaxY, boxes[position * 4 + 3]);
+        }
+
+        boxes[parent * 4] = nodeMinX;
+        boxes[parent * 4 + 1] = nodeMinY;
+        boxes[parent * 4 + 2] = nodeMaxX;
+        boxes[parent * 4 + 3] = nodeMaxY;
+        children[parent] = firstChild;
+        parent++;
+      }
+    }
+
+    return new ResultIndex<T>(results, boxes, children, levelBounds);
+  }
+
+  public int size() {
+    return results.size();
+  }
+
+  // Results whose rect contains the point, in input order
+  public List<T> at(int x, int y) {
+    return this.search(x, y, x, y);
+  }
+
+  // Results whose rect intersects or touches the given one, in input order
+  public List<T> intersecting(BoundingBox rect) {
+    return this.search(rect.x, rect.y, rect.right, rect.bottom);
+  }
+
+  public List<T> search(int minX, int minY, int maxX, int maxY) {
+    if (results.isEmpty()) {
+      return new ArrayList<T>();
+    }
+
+    int[] hits = new int[8];
+    int hitCount = 0;
+    int[] stack = new int[64];
+    int stackSize = 0;
+    int node = boxes.length / 4 - 1;
+
+    while (true) {
+      int level = this.levelOf(node);
+      int first = children[node];
+      int end = Math.min(first + NODE_SIZE, levelBounds[level - 1]);
+
+      for (int position = first; position < end; position++) {
+        if (maxX < boxes[position * 4] || maxY < boxes[position * 4 + 1] || minX > boxes[position * 4 + 2]
+            || minY > boxes[position * 4 + 3]) {
+          continue;
+        }
+
+        if (level == 1) {
+          if (hitCount == hits.length) {
+            hits = Arrays.copyOf(hits, hitCount * 2);
+          }
+
+          hits[hitCount++] = children[position];
+        } else {
+          if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+          }
+
+          stack[stackSize++] = position;
+        }
+      }
+
+      if (stackSize == 0) {
+        break;
+      }
+
+      node = stack[--stackSize];
+    }
+
+    // Back to input order
+    Arrays.sort(hits, 0, hitCount);
+    ArrayList<T> found = new ArrayList<T>(hitCount);
+
+    for (int i = 0; i < hitCount; i++) {
+      found.add(results.get(hits[i]));
+    }
+
+    return found;
+  }
+
+  // Other results sharing a non empty area with the given one (touching edges do
+  // not count), e.g. labels covering each other
+  public List<T> overlapping(T result) {
+    BoundingBox rect = result.getDisplay();
+    ArrayList<T> overlapping = new ArrayList<T>();
+
+    for (T candidate : this.intersecting(rect)) {
+      BoundingBox other = candidate.getDisplay();
+
+      if (candidate != result && other.x < rect.right && rect.x < other.right && other.y < rect.bottom
+          && rect.y < other.bottom) {
+        overlapping.add(candidate);
+      }
+    }
+
+    return overlapping;
+  }
+
+  // Up to k results closest to the point (distance to the rect, 0 inside), nearest first
+  public List<T> nearest(int x, int y, int k) {
+    ArrayList<T> found = new ArrayList<T>(Math.min(k, results.size()));
+
+    if (results.isEmpty() || k <= 0) {
+      return found;
+    }
+
+    // Entries are (squared distance, position, is item), ordered by distance then position
+    PriorityQueue<long[]> queue = new PriorityQueue<long[]>(
+        (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+    int node = boxes.length / 4 - 1;
+
+    while (true) {
+      int level = this.levelOf(node);
+      int first = children[node];
+      int end = Math.min(first + NODE_SIZE, levelBounds[level - 1]);
+
+      for (int position = first; position < end; position++) {
+        queue.add(new long[] { this.distance(position, x, y), position, level == 1 ? 1 : 0 });
+      }
+
+      while (!queue.isEmpty() && queue.peek()[2] == 1) {
+        found.add(results.get(children[(int) queue.poll()[1]]));
+
+        if (found.size() == k) {
+          return found;
+        }
+      }
+
+      if (queue.isEmpty()) {
+        return found;
+      }
+
+      node = (int) queue.poll()[1];
+    }
+  }
+
+  private long distance(int position, int x, int y) {
+    long dx = Math.max(0, Math.max((long) boxes[position * 4] - x, (long) x - boxes[position * 4 + 2]));
+    long dy = Math.max(0, Math.max((long) boxes[position * 4 + 1] - y, (long) y - boxes[position * 4 + 3]));
+
+    return dx * dx + dy * dy;
+  }
+
+  // Level of a node position, 0 = items
+  private int levelOf(int position) {
+    int level = 0;
+
+    while (position >= levelBounds[level]) {
+      level++;
+    }
+
+    return level;
+  }
+
+  // Hilbert curve index of 16 bit coordinates (from "Fast Hilbert curve generation,
+  // sorting, and range queries" by rawrunprotected, as used by flatbush)
+  private static int hilbert(int x, int y) {
+    int a = x ^ y;
+    int b = 0xFFFF ^ a;
+    int c = 0xFFFF ^ (x | y);
+    int d = x & (y ^ 0xFFFF);
+
+    int A = a | (b >>> 1);
+    int B = (a >>> 1) ^ a;
+    int C = ((c >>> 1) ^ (b & (d >>> 1))) ^ c;
+    int D = ((a & (c >>> 1)) ^ (d >>> 1)) ^ d;
+
+    a = A;
+    b = B;
+    c = C;
+    d = D;
+    A = (a & (a >>> 2)) ^ (b & (b >>> 2));
+    B = (a & (b >>> 2)) ^ (b & ((a ^ b) >>> 2));
+    C ^= (a & (c >>> 2)) ^ (b & (d >>> 2));
+    D ^= (b & (c >>> 2)) ^ ((a ^ b) & (d >>> 2));
+
+    a = A;
+    b = B;
+    c = C;
+    d = D;
+    A = (a & (a >>> 4)) ^ (b & (b >>> 4));
+    B = (a & (b >>> 4)) ^ (b & ((a ^ b) >>> 4));
+    C ^= (a & (c >>> 4)) ^ (b & (d >>> 4));
+    D ^= (b & (c >>> 4)) ^ ((a ^ b) & (d >>> 4));
+
+    a = A;
+    b = B;
+    c = C;
+    d = D;
+    C ^= (a & (c >>> 8)) ^ (b & (d >>> 8));
+    D ^= (b & (c >>> 8)) ^ ((a ^ b) & (d >>> 8));
+
+    a = C ^ (C >>> 1);
+    b = D ^ (D >>> 1);
+
+    int i0 = x ^ y;
+    int i1 = b | (0xFFFF ^ (i0 | a));
+
+    i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+    i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+    i0 = (i0 | (i0 << 2)) & 0x33333333;
+    i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+    i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+    i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+    i1 = (i1 | (i1 << 2)) & 0x33333333;
+    i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+    return (i1 << 1) | i0;
+  }
+}
@@ -0,0 +1,221 @@
+package com.mapgrab.selenium;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.mapgrab.selenium.codec.MapGrabCodec;
+import com.mapgrab.selenium.controller.ScreenPoint;
+
+public class MapLocatorTest {
+  private static final String SELECTOR = "map[id=mainMap] layer[id=points]";
+
+  // Answers the query command, "not modified" while the known epoch (and lazy handle) is current
+  static class FakePage implements JavascriptExecutor {
+    final List<List<?>> params = new ArrayList<List<?>>();
+    String epoch = "e1";
+    List<String> featureIds = List.of("a");
+    boolean handlesKept = true;
+    int queryId = 0;
+
+    @Override
+    public Object executeScript(String script, Object... args) {
+      return null;
+    }
+
+    @Override
+    public Object executeAsyncScript(String script, Object... args) {
+      List<?> call = (List<?>) MapGrabCodec.shared().decode(args[0], Map.class).get("params");
+      params.add(call);
+
+      Object knownEpoch = call.get(0);
+      boolean lazy = Boolean.TRUE.equals(call.get(2));
+      Map<String, Object> response = new LinkedHashMap<String, Object>();
+      response.put("epoch", epoch);
+      response.put("attempts", 1);
+
+      if (epoch.equals(knownEpoch) && (call.get(3) == null || handlesKept)) {
+        response.put("notModified", true);
+      } else {
+        List<Object> data = new ArrayList<Object>();
+        int currentQuery = queryId++;
+
+        for (int i = 0; i < featureIds.size(); i++) {
+          data.add(feature(featureIds.get(i), lazy ? "g1:" + currentQuery + ":" + i : null));
+        }
+
+        response.put("data", data);
+      }
+
+      Map<String, Object> envelope = new HashMap<String, Object>();
+      envelope.put("generation", "g1");
+      envelope.put("result", MapGrabCodec.shared().encode(response));
+
+      return envelope;
+    }
+
+    private static Map<String, Object> feature(String featureId, String handle) {
+      Map<String, Object> feature = new LinkedHashMap<String, Object>();
+      feature.put("featureId", featureId);
+      feature.put("mapId", "mainMap");
+      // Features with an id starting with "hidden" are not visible
+      feature.put("isVisible", !featureId.startsWith("hidden"));
+
+      if (handle != null) {
+        feature.put("handle", handle);
+      } else {
+        feature.put("properties", Map.of("name", "Cafe"));
+      }
+
+      feature.put("rect", Map.of("x", 10, "y", 20, "width", 5, "height", 5, "right", 15, "bottom", 25));
+      feature.put("interactionPoints", List.of(Map.of("x", 12, "y", 22)));
+
+      return feature;
+    }
+  }
+
+  @Test(description = "not modified answer should serve the cached results")
+  public void notModifiedShouldServeCachedResults() throws Exception {
+    FakePage page = new FakePage();
+    MapLocator locator = new MapLocator(new MapGrabContext(null).setExecutor(page), SELECTOR);
+
+    SingleResult first = (SingleResult) locator.getElement();
+    first.rect.x = 999;
+    first.properties.put("name", "changed");
+
+    SingleResult second = (SingleResult) locator.getElement();
+
+    Assert.assertEquals(page.params.size(), 2);
+    Assert.assertNull(page.params.get(0).get(0));
+    Assert.assertEquals(page.params.get(1).get(0), "e1");
+    Assert.assertNotSame(second, first);
+    Assert.assertEquals(second.featureId, "a");
+    Assert.assertEquals(second.rect.x, 10);
+    Assert.assertEquals(second.properties.get("name"), "Cafe");
+  }
+
+  @Test(description = "post-processing should not change cached results")
+  public void postProcessingShouldNotChangeCache() {
+    FakePage page = new FakePage();
+    page.featureIds = List.of("a", "a", "b", "hidden");
+    MapLocator locator = new MapLocator(new MapGrabContext(null).setExecutor(page), SELECTOR)
+        .merge((result) -> result.featureId);
+
+    Assert.assertEquals(locator.count(), 2);
+    Assert.assertEquals(locator.count(), 2);
+    Assert.assertEquals(page.params.get(1).get(0), "e1");
+
+    // Same cached entry without merge still has all visible features
+    Assert.assertEquals(new MapLocator(locator.getContext(), SELECTOR).count(), 3);
+  }
+
+  @Test(description = "new epoch should replace the cached results")
+  public void newEpochShouldQueryAgain() {
+    FakePage page = new FakePage();
+    MapLocator locator = new MapLocator(new MapGrabContext(null).setExecutor(page), SELECTOR);
+
+    Assert.assertEquals(locator.count(), 1);
+
+    page.epoch = "e2";
+    page.featureIds = List.of("a", "b");
+
+    Assert.assertEquals(locator.count(), 2);
+    Assert.assertEquals(page.params.get(1).get(0), "e1");
+    Assert.assertEquals(locator.count(), 2);
+    Assert.assertEquals(page.params.get(2).get(0), "e2");
+  }
+
+  @Test(description = "lazy results should only be reused while their handles are kept")
+  public void lazyResultsShouldNeedKeptHandles() throws Exception {
+    FakePage page = new FakePage();
+    MapLocator locator = new MapLocator(new MapGrabContext(null).setExecutor(page).setLazyProperties(true), SELECTOR);
+
+    Assert.assertEquals(((SingleResult) locator.getElement()).handle, "g1:0:0");
+    Assert.assertEquals(((SingleResult) locator.getElement()).handle, "g1:0:0");
+    Assert.assertEquals(page.params.get(1).get(3), "g1:0:0");
+
+    page.handlesKept = false;
+
+    Assert.assertEquals(((SingleResult) locator.getElement()).handle, "g1:1:0");
+    Assert.assertEquals(page.params.get(2).get(3), "g1:0:0");
+  }
+
+  @Test(description = "last() and negative nth() should count from the end")
+  public void negativeIndexShouldCountFromEnd() {
+    List<SingleResult> results = List.of(result("a", 0, 0, 1, 1), result("b", 0, 0, 1, 1), result("c", 0, 0, 1, 1));
+
+    Assert.assertEquals(process(locator().last(), results), List.of(results.get(2)));
+    Assert.assertEquals(process(locator().nth(-3), results), List.of(results.get(0)));
+    Assert.assertEquals(process(locator().first(), results), List.of(results.get(0)));
+  }
+
+  @Test(description = "nth() should index merged results, not features")
+  public void indexShouldApplyAfterMerge() {
+    List<SingleResult> results = List.of(result("a", 0, 0, 1, 1), result("b", 0, 0, 1, 1), result("a", 4, 4, 1, 1));
+
+    ArrayList<? extends Result> last = process(locator().merge((result) -> result.featureId).last(), results);
+
+    Assert.assertEquals(last, List.of(results.get(1)));
+  }
+
+  @Test(description = "out of range nth() should leave no element")
+  public void outOfRangeIndexShouldLeaveNoElement() {
+    List<SingleResult> results = List.of(result("a", 0, 0, 1, 1), result("b", 0, 0, 1, 1));
+
+    Assert.assertTrue(process(locator().nth(2), results).isEmpty());
+    Assert.assertTrue(process(locator().nth(-3), results).isEmpty());
+  }
+
+  @Test(description = "out of range nth() should leave no element for a single result")
+  public void outOfRangeIndexShouldLeaveNoElementForSingleResult() {
+    List<SingleResult> results = List.of(result("a", 0, 0, 1, 1));
+
+    Assert.assertTrue(process(locator().nth(1), results).isEmpty());
+    Assert.assertTrue(process(locator().nth(5), results).isEmpty());
+    Assert.assertTrue(process(locator().nth(-2), results).isEmpty());
+    Assert.assertEquals(process(locator().first(), results), results);
+    Assert.assertEquals(process(locator().last(), results), results);
+  }
+
+  @Test(description = "out of range nth() should leave no element for a single merged result")
+  public void outOfRangeIndexShouldLeaveNoElementForSingleMergedResult() {
+    List<SingleResult> results = List.of(result("a", 0, 0, 1, 1), result("a", 4, 4, 1, 1));
+
+    Assert.assertTrue(process(locator().merge((result) -> result.featureId).nth(1), results).isEmpty());
+    Assert.assertEquals(process(locator().merge((result) -> result.featureId).last(), results).size(), 1);
+  }
+
+  @Test(description = "nth() should leave empty and hidden results empty")
+  public void indexShouldHandleEmptyResults() {
+    SingleResult hidden = result("a", 0, 0, 1, 1);
+    hidden.isVisible = false;
+
+    Assert.assertTrue(process(locator().last(), List.of()).isEmpty());
+    Assert.assertTrue(process(locator().merge((result) -> result.featureId).nth(1), List.of(hidden)).isEmpty());
+  }
+
+  private static MapLocator locator() {
+    return new MapLocator(new MapGrabContext(null), SELECTOR);
+  }
+
+  private static ArrayList<? extends Result> process(MapLocator locator, List<SingleResult> results) {
+    return locator.processResults(new ArrayList<SingleResult>(results));
+  }
+
+  private static SingleResult result(String featureId, int x, int y, int width, int height) {
+    SingleResult result = new SingleResult();
+    result.featureId = featureId;
+    result.isVisible = true;
+    result.properties = new HashMap<String, String>();
+    result.rect = new BoundingBox(x, y, width, height);
+    result.interactionPoints = List.of(new ScreenPoint(x, y));
+
+    return result;
+  }
+}
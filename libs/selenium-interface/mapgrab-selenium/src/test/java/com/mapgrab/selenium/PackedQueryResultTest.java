@@ -0,0 +1,126 @@
+package com.mapgrab.selenium;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.mapgrab.selenium.controller.ScreenPoint;
+
+public class PackedQueryResultTest {
+  // Int32Array/Float64Array buffers (little endian) as encoded by the map interface for
+  // two features: [257, 1, 2, 3, 1, 0, 1, 0, 1] and [-1, 1, 2, 3, 0, 1, 0, 1, 2]
+  private static final String FEATURES = "AQEAAAEAAAACAAAAAwAAAAEAAAAAAAAAAQAAAAAAAAABAAAA/////wEAAAACAAAAAwAAAAAAAAABAAAA"
+      + "AAAAAAEAAAACAAAA";
+  // [4, 5]
+  private static final String PROPERTIES = "BAAAAAUAAAA=";
+  // [10.5, 20.9, 70000.25, -3.75, 5, 6]
+  private static final String POINTS = "AAAAAAAAJUBmZmZmZuY0QAAAAAAEF/FAAAAAAAAADsAAAAAAAAAUQAAAAAAAABhA";
+  // [1.5, 2, 3, 4, 4.5, 6, -10, -20, 30, 40, 20, 20]
+  private static final String RECTS = "AAAAAAAA+D8AAAAAAAAAQAAAAAAAAAhAAAAAAAAAEEAAAAAAAAASQAAAAAAAABhAAAAAAAAAJMAAAAAA"
+      + "AAA0wAAAAAAAAD5AAAAAAAAAREAAAAAAAAA0QAAAAAAAADRA";
+
+  @Test(description = "decode() should read little endian Int32 and Float64 columns")
+  public void decodeShouldReadColumns() {
+    ArrayList<SingleResult> results = packed().decode();
+
+    Assert.assertEquals(results.size(), 2);
+
+    SingleResult first = results.get(0);
+    // 257 only decodes to itself when read little endian
+    Assert.assertEquals(first.featureId, "feature-257");
+    Assert.assertEquals(first.sourceId, "points-source");
+    Assert.assertEquals(first.layerId, "points");
+    Assert.assertEquals(first.mapId, "mainMap");
+    Assert.assertTrue(first.isVisible);
+    Assert.assertEquals(first.properties, Map.of("name", "Cafe"));
+    Assert.assertNull(first.handle);
+    Assert.assertEquals(points(first), List.of(List.of(10, 20)));
+    assertRect(first.rect, 1, 2, 3, 4, 4, 6);
+
+    SingleResult second = results.get(1);
+    Assert.assertNull(second.featureId);
+    Assert.assertFalse(second.isVisible);
+    Assert.assertTrue(second.properties.isEmpty());
+    // Float to int truncates towards zero, as Jackson coercion does on the JSON path
+    Assert.assertEquals(points(second), List.of(List.of(70000, -3), List.of(5, 6)));
+    assertRect(second.rect, -10, -20, 30, 40, 20, 20);
+  }
+
+  @Test(description = "decode() should give lazy results handles instead of properties")
+  public void decodeShouldAssignHandles() {
+    PackedQueryResult packed = packed();
+    packed.generation = "g1";
+    packed.queryId = 7;
+    packed.properties = "";
+
+    ArrayList<SingleResult> results = packed.decode();
+
+    Assert.assertEquals(results.get(0).handle, "g1:7:0");
+    Assert.assertEquals(results.get(1).handle, "g1:7:1");
+    Assert.assertNull(results.get(0).properties);
+  }
+
+  @Test(description = "decode() should return no results for zero rows")
+  public void decodeShouldHandleZeroRows() {
+    PackedQueryResult packed = new PackedQueryResult();
+    packed.count = 0;
+    packed.strings = new String[0];
+    packed.features = "";
+    packed.properties = "";
+    packed.points = "";
+    packed.rects = "";
+
+    Assert.assertTrue(packed.decode().isEmpty());
+  }
+
+  @Test(description = "decode() should reject columns not matching the count", expectedExceptions = IllegalStateException.class)
+  public void decodeShouldRejectCountMismatch() {
+    PackedQueryResult packed = packed();
+    packed.count = 3;
+
+    packed.decode();
+  }
+
+  private static PackedQueryResult packed() {
+    String[] strings = new String[258];
+
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = "unused-" + i;
+    }
+
+    strings[1] = "points-source";
+    strings[2] = "points";
+    strings[3] = "mainMap";
+    strings[4] = "name";
+    strings[5] = "Cafe";
+    strings[257] = "feature-257";
+
+    PackedQueryResult packed = new PackedQueryResult();
+    packed.count = 2;
+    packed.strings = strings;
+    packed.features = FEATURES;
+    packed.properties = PROPERTIES;
+    packed.points = POINTS;
+    packed.rects = RECTS;
+
+    return packed;
+  }
+
+  private static List<List<Integer>> points(SingleResult result) {
+    ArrayList<List<Integer>> points = new ArrayList<List<Integer>>();
+
+    for (ScreenPoint point : result.interactionPoints) {
+      points.add(List.of(point.x, point.y));
+    }
+
+    return points;
+  }
+
+  private static void assertRect(BoundingBox rect, int x, int y, int width, int height, int right, int bottom) {
+    Assert.assertEquals(List.of(rect.x, rect.y, rect.width, rect.height, rect.right, rect.bottom),
+        List.of(x, y, width, height, right, bottom));
+  }
+}
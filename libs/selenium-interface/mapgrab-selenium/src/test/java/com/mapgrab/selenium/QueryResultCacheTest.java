@@ -0,0 +1,124 @@
+package com.mapgrab.selenium;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.mapgrab.selenium.codec.WireFormat;
+import com.mapgrab.selenium.controller.ScreenPoint;
+
+public class QueryResultCacheTest {
+  private static final String SELECTOR = "map[id=mainMap] layer[id=points]";
+
+  @Test(description = "entries should be kept apart per wire format and lazy mode")
+  public void entriesShouldBeKeyedByWireFormatAndLazy() {
+    QueryResultCache cache = new QueryResultCache(16);
+    cache.put(SELECTOR, WireFormat.JSON, false, "e1", List.of(result("json")));
+    cache.put(SELECTOR, WireFormat.PACKED, true, "e2", List.of(result("packed-lazy")));
+
+    Assert.assertEquals(cache.getEpoch(SELECTOR, WireFormat.JSON, false), "e1");
+    Assert.assertEquals(cache.get(SELECTOR, WireFormat.JSON, false, "e1").get(0).featureId, "json");
+    Assert.assertEquals(cache.getEpoch(SELECTOR, WireFormat.PACKED, true), "e2");
+    Assert.assertEquals(cache.get(SELECTOR, WireFormat.PACKED, true, "e2").get(0).featureId, "packed-lazy");
+
+    Assert.assertNull(cache.getEpoch(SELECTOR, WireFormat.JSON, true));
+    Assert.assertNull(cache.get(SELECTOR, WireFormat.JSON, true, "e1"));
+    Assert.assertNull(cache.getEpoch(SELECTOR, WireFormat.PACKED, false));
+    Assert.assertNull(cache.get(SELECTOR, WireFormat.PACKED, false, "e2"));
+    Assert.assertNull(cache.get(SELECTOR, WireFormat.OBJECT, false, "e1"));
+    Assert.assertNull(cache.get("map[id=otherMap]", WireFormat.JSON, false, "e1"));
+  }
+
+  @Test(description = "get() should miss on another epoch")
+  public void getShouldMissOnOtherEpoch() {
+    QueryResultCache cache = new QueryResultCache(16);
+    cache.put(SELECTOR, WireFormat.JSON, false, "e1", List.of(result("a")));
+
+    Assert.assertNull(cache.get(SELECTOR, WireFormat.JSON, false, "e2"));
+    Assert.assertNull(cache.get(SELECTOR, WireFormat.JSON, false, null));
+  }
+
+  @Test(description = "cached results should not change with the ones handed out or put in")
+  public void resultsShouldBeCopied() {
+    QueryResultCache cache = new QueryResultCache(16);
+    SingleResult original = result("a");
+    cache.put(SELECTOR, WireFormat.JSON, false, "e1", List.of(original));
+
+    original.rect.x = 500;
+    original.properties.put("name", "changed");
+
+    ArrayList<SingleResult> first = cache.get(SELECTOR, WireFormat.JSON, false, "e1");
+    first.get(0).rect.x = 999;
+    first.get(0).isVisible = false;
+    first.get(0).properties.put("name", "changed");
+    first.get(0).interactionPoints.get(0).x = 999;
+    first.clear();
+
+    SingleResult cached = cache.get(SELECTOR, WireFormat.JSON, false, "e1").get(0);
+    Assert.assertEquals(cached.rect.x, 10);
+    Assert.assertTrue(cached.isVisible);
+    Assert.assertEquals(cached.properties.get("name"), "Cafe");
+    Assert.assertEquals(cached.interactionPoints.get(0).x, 10);
+  }
+
+  @Test(description = "least recently used entry should be evicted at capacity")
+  public void leastRecentlyUsedShouldBeEvicted() {
+    QueryResultCache cache = new QueryResultCache(2);
+    cache.put("a", WireFormat.JSON, false, "e1", List.of(result("a")));
+    cache.put("b", WireFormat.JSON, false, "e1", List.of(result("b")));
+
+    // Reading "a" makes "b" the eldest
+    Assert.assertNotNull(cache.get("a", WireFormat.JSON, false, "e1"));
+    cache.put("c", WireFormat.JSON, false, "e1", List.of(result("c")));
+
+    Assert.assertNotNull(cache.get("a", WireFormat.JSON, false, "e1"));
+    Assert.assertNull(cache.get("b", WireFormat.JSON, false, "e1"));
+    Assert.assertNotNull(cache.get("c", WireFormat.JSON, false, "e1"));
+  }
+
+  @Test(description = "capacity 0 should disable the cache")
+  public void zeroCapacityShouldDisableCache() {
+    QueryResultCache disabled = new QueryResultCache(0);
+    disabled.put(SELECTOR, WireFormat.JSON, false, "e1", List.of(result("a")));
+
+    Assert.assertNull(disabled.getEpoch(SELECTOR, WireFormat.JSON, false));
+
+    QueryResultCache cache = new QueryResultCache(16);
+    cache.put(SELECTOR, WireFormat.JSON, false, "e1", List.of(result("a")));
+    cache.setCapacity(0);
+
+    Assert.assertNull(cache.getEpoch(SELECTOR, WireFormat.JSON, false));
+
+    cache.put(SELECTOR, WireFormat.JSON, false, "e1", List.of(result("a")));
+    Assert.assertNull(cache.getEpoch(SELECTOR, WireFormat.JSON, false));
+  }
+
+  @Test(description = "getHandle() should return a handle of cached lazy results")
+  public void getHandleShouldReturnLazyHandle() {
+    QueryResultCache cache = new QueryResultCache(16);
+    SingleResult lazy = result("a");
+    lazy.properties = null;
+    lazy.handle = "g1:3:0";
+    cache.put(SELECTOR, WireFormat.JSON, true, "e1", List.of(lazy));
+    cache.put(SELECTOR, WireFormat.JSON, false, "e1", List.of(result("a")));
+
+    Assert.assertEquals(cache.getHandle(SELECTOR, WireFormat.JSON, true), "g1:3:0");
+    Assert.assertNull(cache.getHandle(SELECTOR, WireFormat.JSON, false));
+    Assert.assertNull(cache.getHandle("map[id=otherMap]", WireFormat.JSON, true));
+  }
+
+  private static SingleResult result(String featureId) {
+    SingleResult result = new SingleResult();
+    result.featureId = featureId;
+    result.isVisible = true;
+    result.properties = new HashMap<String, String>();
+    result.properties.put("name", "Cafe");
+    result.rect = new BoundingBox(10, 20, 5, 5);
+    result.interactionPoints = new ArrayList<ScreenPoint>(List.of(new ScreenPoint(10, 20)));
+
+    return result;
+  }
+}
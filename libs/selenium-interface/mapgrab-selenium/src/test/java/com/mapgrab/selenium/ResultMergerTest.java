@@ -0,0 +1,50 @@
+package com.mapgrab.selenium;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.mapgrab.selenium.controller.ScreenPoint;
+
+public class ResultMergerTest {
+  @Test(description = "merge() should group by key in order of first appearance with bounds of all members")
+  public void mergeShouldGroupWithBounds() {
+    SingleResult a1 = result("a", 10, 20, 5, 5);
+    SingleResult b = result("b", 0, 0, 1, 1);
+    SingleResult a2 = result("a", 30, 5, 10, 40);
+
+    ArrayList<Result> merged = new ResultMerger((result) -> result.featureId).merge(List.of(a1, b, a2));
+
+    Assert.assertEquals(merged.size(), 2);
+
+    MergedResult group = (MergedResult) merged.get(0);
+    Assert.assertEquals(group.features, List.of(a1, a2));
+    Assert.assertEquals(group.rect.x, 10);
+    Assert.assertEquals(group.rect.y, 5);
+    Assert.assertEquals(group.rect.right, 40);
+    Assert.assertEquals(group.rect.bottom, 45);
+    Assert.assertEquals(group.interactionPoints.size(), 2);
+
+    // Single member groups stay the query result itself
+    Assert.assertSame(merged.get(1), b);
+  }
+
+  @Test(description = "merge() should return no groups for empty results")
+  public void mergeShouldHandleEmptyResults() {
+    Assert.assertTrue(new ResultMerger((result) -> result.featureId).merge(List.of()).isEmpty());
+  }
+
+  private static SingleResult result(String featureId, int x, int y, int width, int height) {
+    SingleResult result = new SingleResult();
+    result.featureId = featureId;
+    result.isVisible = true;
+    result.properties = new HashMap<String, String>();
+    result.rect = new BoundingBox(x, y, width, height);
+    result.interactionPoints = List.of(new ScreenPoint(x, y));
+
+    return result;
+  }
+}
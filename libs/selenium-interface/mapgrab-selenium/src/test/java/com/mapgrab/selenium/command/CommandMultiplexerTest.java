@@ -0,0 +1,185 @@
+package com.mapgrab.selenium.command;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriverException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mapgrab.selenium.MapGrabContext;
+import com.mapgrab.selenium.codec.MapGrabCodec;
+
+public class CommandMultiplexerTest {
+  // Answers every call with its own arguments, batches with one answer per call
+  static class FakeSession implements JavascriptExecutor {
+    final List<String> scripts = new ArrayList<String>();
+    final List<Map<?, ?>> batches = new ArrayList<Map<?, ?>>();
+    volatile Throwable failure;
+
+    @Override
+    public Object executeScript(String script, Object... args) {
+      return null;
+    }
+
+    @Override
+    public synchronized Object executeAsyncScript(String script, Object... args) {
+      scripts.add(script);
+
+      if (failure instanceof RuntimeException e) {
+        throw e;
+      }
+
+      if (failure instanceof Error e) {
+        throw e;
+      }
+
+      if (!script.contains("const batch = JSON.parse")) {
+        return Map.of("echo", args[0]);
+      }
+
+      Map<?, ?> batch = MapGrabCodec.shared().decode(args[0], Map.class);
+      batches.add(batch);
+
+      List<Object> responses = new ArrayList<Object>();
+      ((List<?>) batch.get("calls")).forEach((call) -> responses.add(Map.of("echo", call)));
+
+      return responses;
+    }
+  }
+
+  private FakeSession session;
+  private MapGrabContext context;
+  private CommandMultiplexer multiplexer;
+  private ExecutorService callers;
+
+  @BeforeMethod
+  public void setUp() {
+    session = new FakeSession();
+    context = new MapGrabContext(null).setExecutor(session).setCoalesceWindow(Duration.ofMillis(200));
+    multiplexer = new CommandMultiplexer(context);
+    callers = Executors.newCachedThreadPool();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    callers.shutdownNow();
+  }
+
+  @Test(description = "lone command should be sent as is")
+  public void loneCommandShouldBeSentAsIs() {
+    Object response = multiplexer.execute("done(1)", "{\"id\":1}", List.of(), deadline(5000));
+
+    Assert.assertEquals(response, Map.of("echo", "{\"id\":1}"));
+    Assert.assertEquals(session.scripts, List.of("done(1)"));
+  }
+
+  @Test(description = "commands within the window should share one call and get their own response")
+  public void commandsWithinWindowShouldShareOneCall() {
+    List<CompletableFuture<Object>> responses = this.executeTogether(3, (i) -> deadline(5000));
+
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(responses.get(i).join(), Map.of("echo", "{\"id\":" + i + "}"));
+    }
+
+    Assert.assertEquals(session.scripts.size(), 1);
+    Assert.assertEquals(session.batches.size(), 1);
+
+    for (int i = 0; i < 3; i++) {
+      Assert.assertTrue(session.scripts.get(0).contains("done(" + i + ")"));
+    }
+
+    Assert.assertEquals(session.batches.get(0).get("waitSelectors"), List.of("map[id=mainMap]"));
+  }
+
+  @Test(description = "each batched command should keep its own remaining budget")
+  public void batchShouldCarryBudgets() {
+    List<CompletableFuture<Object>> responses = this.executeTogether(3,
+        (i) -> deadline(i == 0 ? 5000 : i == 1 ? 1000 : -100));
+    responses.forEach(CompletableFuture::join);
+
+    Map<?, ?> batch = session.batches.get(0);
+    List<?> calls = (List<?>) batch.get("calls");
+    List<?> budgets = (List<?>) batch.get("budgets");
+    long[] byId = new long[3];
+
+    for (int i = 0; i < calls.size(); i++) {
+      int id = Integer.parseInt(((String) calls.get(i)).replaceAll("\\D", ""));
+      byId[id] = ((Number) budgets.get(i)).longValue();
+    }
+
+    // Sent after the coalesce window, so less than the budget at call time
+    Assert.assertTrue(byId[0] > 4000 && byId[0] <= 5000, "budget " + byId[0]);
+    Assert.assertTrue(byId[1] > 0 && byId[1] <= 1000, "budget " + byId[1]);
+    // Past deadlines are not negative
+    Assert.assertEquals(byId[2], 0);
+    // Shared wait bounded by the smallest budget
+    Assert.assertEquals(((Number) batch.get("waitTimeout")).longValue(), 0);
+  }
+
+  @Test(description = "failures should reach every caller and keep the dispatcher running")
+  public void failuresShouldReachEveryCaller() {
+    session.failure = new LinkageError("session died");
+
+    for (CompletableFuture<Object> response : this.executeTogether(3, (i) -> deadline(5000))) {
+      CompletionException e = Assert.expectThrows(CompletionException.class, response::join);
+      Assert.assertTrue(e.getCause() instanceof LinkageError, String.valueOf(e.getCause()));
+    }
+
+    session.failure = new WebDriverException("no such window");
+
+    for (CompletableFuture<Object> response : this.executeTogether(2, (i) -> deadline(5000))) {
+      CompletionException e = Assert.expectThrows(CompletionException.class, response::join);
+      Assert.assertTrue(e.getCause() instanceof WebDriverException, String.valueOf(e.getCause()));
+    }
+
+    session.failure = null;
+
+    Assert.assertEquals(multiplexer.execute("done(9)", "{\"id\":9}", List.of(), deadline(5000)),
+        Map.of("echo", "{\"id\":9}"));
+  }
+
+  private interface DeadlineForCall {
+    long deadline(int call);
+  }
+
+  // Starts the calls at once, well within the coalesce window
+  private List<CompletableFuture<Object>> executeTogether(int count, DeadlineForCall deadlines) {
+    CountDownLatch start = new CountDownLatch(1);
+    List<CompletableFuture<Object>> responses = new ArrayList<CompletableFuture<Object>>();
+
+    for (int i = 0; i < count; i++) {
+      int call = i;
+      long deadline = deadlines.deadline(call);
+
+      responses.add(CompletableFuture.supplyAsync(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+
+        return multiplexer.execute("done(" + call + ")", "{\"id\":" + call + "}", List.of("map[id=mainMap]"),
+            deadline);
+      }, callers));
+    }
+
+    start.countDown();
+
+    return responses;
+  }
+
+  private static long deadline(long millis) {
+    return System.nanoTime() + Duration.ofMillis(millis).toNanos();
+  }
+}
@@ -0,0 +1,171 @@
+package com.mapgrab.selenium.command;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mapgrab.selenium.MapGrabContext;
+import com.mapgrab.selenium.codec.MapGrabCodec;
+
+public class StabilityTrackerTest {
+  // Answers like the command prelude: stale on another generation, unstable when the map
+  // rendered since the epochs sent, map epochs reported after a full stability wait
+  static class FakePage implements JavascriptExecutor {
+    final List<String> scripts = new ArrayList<String>();
+    final List<Map<?, ?>> arguments = new ArrayList<Map<?, ?>>();
+    String generation = "g1";
+    long epoch = 5;
+
+    @Override
+    public Object executeScript(String script, Object... args) {
+      return null;
+    }
+
+    @Override
+    public Object executeAsyncScript(String script, Object... args) {
+      Map<?, ?> call = MapGrabCodec.shared().decode(args[0], Map.class);
+      scripts.add(script);
+      arguments.add(call);
+
+      Map<String, Object> envelope = new HashMap<String, Object>();
+
+      if (call.get("generation") != null && !generation.equals(call.get("generation"))) {
+        envelope.put("stale", true);
+      } else if (call.get("stableEpochs") instanceof Map<?, ?> epochs
+          && ((Number) epochs.get("mainMap")).longValue() != epoch) {
+        envelope.put("unstable", true);
+      } else {
+        envelope.put("generation", generation);
+        envelope.put("result", "1");
+
+        if (Boolean.TRUE.equals(call.get("reportStable"))) {
+          envelope.put("stable", Map.of("mainMap", epoch));
+        }
+      }
+
+      return envelope;
+    }
+
+    boolean waitedFor(int call, CommandStep step) {
+      return scripts.get(call).contains("enterPhase('" + step.name() + "')");
+    }
+  }
+
+  private static final MapGrabCommand MAP_QUERY = MapGrabCommand.forMap("mapQuery")
+      .awaitStable()
+      .perform("1");
+
+  private static final MapGrabCommand LOCATOR_QUERY = MapGrabCommand.forLocator("locatorQuery")
+      .awaitStable()
+      .perform("1");
+
+  private static final String SELECTOR = "map[id=mainMap] layer[id=points]";
+
+  private FakePage page;
+  private CommandRunner runner;
+
+  @BeforeMethod
+  public void setUp() {
+    page = new FakePage();
+    runner = new MapGrabContext(null).setExecutor(page).getCommandRunner();
+  }
+
+  @Test(description = "clean map should skip stability steps and only confirm its epoch")
+  public void cleanMapShouldSkipStabilitySteps() {
+    this.queryMap();
+    this.queryLocator();
+    this.queryMap();
+    this.queryLocator();
+
+    Assert.assertTrue(page.waitedFor(0, CommandStep.MAP_STABLE));
+    Assert.assertTrue(page.waitedFor(1, CommandStep.LOCATOR_STABLE));
+    Assert.assertFalse(page.waitedFor(2, CommandStep.MAP_STABLE));
+    Assert.assertFalse(page.waitedFor(3, CommandStep.LOCATOR_STABLE));
+    Assert.assertEquals(page.arguments.get(2).get("stableEpochs"), Map.of("mainMap", 5));
+    Assert.assertEquals(page.arguments.get(3).get("stableEpochs"), Map.of("mainMap", 5));
+    Assert.assertNull(page.arguments.get(3).get("reportStable"));
+  }
+
+  @Test(description = "markDirty() and markAllDirty() should restore stability steps")
+  public void dirtyMapShouldWaitAgain() {
+    this.queryMap();
+    this.queryLocator();
+
+    runner.getStabilityTracker().markDirty("mainMap");
+    this.queryMap();
+    Assert.assertTrue(page.waitedFor(2, CommandStep.MAP_STABLE));
+    Assert.assertNull(page.arguments.get(2).get("stableEpochs"));
+
+    // Locator maps are known, the map is clean again after the full wait
+    this.queryLocator();
+    Assert.assertFalse(page.waitedFor(3, CommandStep.LOCATOR_STABLE));
+
+    runner.getStabilityTracker().markAllDirty();
+    this.queryLocator();
+    this.queryMap();
+    Assert.assertTrue(page.waitedFor(4, CommandStep.LOCATOR_STABLE));
+    Assert.assertFalse(page.waitedFor(5, CommandStep.MAP_STABLE));
+  }
+
+  @Test(description = "unstable response should rerun the command with the full wait")
+  public void unstableResponseShouldRerunWithFullWait() {
+    this.queryMap();
+    page.epoch = 6;
+
+    Assert.assertEquals(this.queryMap(), 1);
+    Assert.assertEquals(page.scripts.size(), 3);
+    Assert.assertEquals(page.arguments.get(1).get("stableEpochs"), Map.of("mainMap", 5));
+    Assert.assertTrue(page.waitedFor(2, CommandStep.MAP_STABLE));
+    Assert.assertNull(page.arguments.get(2).get("stableEpochs"));
+
+    // Clean again at the new epoch
+    this.queryMap();
+    Assert.assertEquals(page.arguments.get(3).get("stableEpochs"), Map.of("mainMap", 6));
+  }
+
+  @Test(description = "generation change should clear clean maps")
+  public void generationChangeShouldClearState() {
+    this.queryMap();
+    page.generation = "g2";
+
+    Assert.assertEquals(this.queryMap(), 1);
+    // Stale on the skipping call, full wait (interface included) in the new document
+    Assert.assertEquals(page.arguments.get(1).get("generation"), "g1");
+    Assert.assertTrue(page.waitedFor(2, CommandStep.MAP_INTERFACE));
+    Assert.assertTrue(page.waitedFor(2, CommandStep.MAP_STABLE));
+    Assert.assertNull(page.arguments.get(2).get("stableEpochs"));
+    Assert.assertEquals(runner.getStabilityTracker().getStableEpoch("g2", "mainMap"), 5L);
+    Assert.assertNull(runner.getStabilityTracker().getStableEpoch("g1", "mainMap"));
+  }
+
+  @Test(description = "stable report in another generation should drop maps of the previous one")
+  public void markStableShouldClearOtherGeneration() {
+    StabilityTracker tracker = new StabilityTracker();
+    CommandRunner.Arguments mainMap = new CommandRunner.Arguments();
+    mainMap.mapId = "mainMap";
+    CommandRunner.Arguments otherMap = new CommandRunner.Arguments();
+    otherMap.mapId = "otherMap";
+
+    tracker.markStable("g1", mainMap, Map.of("mainMap", 5));
+    Assert.assertEquals(tracker.getStableEpochs("g1", mainMap), Map.of("mainMap", 5L));
+
+    tracker.markStable("g2", otherMap, Map.of("otherMap", 1));
+    Assert.assertNull(tracker.getStableEpochs("g1", mainMap));
+    Assert.assertNull(tracker.getStableEpochs("g2", mainMap));
+    Assert.assertEquals(tracker.getStableEpochs("g2", otherMap), Map.of("otherMap", 1L));
+  }
+
+  private Integer queryMap() {
+    return runner.query(MAP_QUERY, "mainMap", Integer.class);
+  }
+
+  private Integer queryLocator() {
+    return runner.query(LOCATOR_QUERY, SELECTOR, Integer.class);
+  }
+}
@@ -0,0 +1,121 @@
+package com.mapgrab.selenium.controller;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MapProjectorTest {
+  private static final double DELTA = 1e-6;
+  // MapLibre default vertical field of view
+  private static final double DEFAULT_FOV = 0.6435011087932844;
+
+  @Test(description = "project() should match map.project() on an unrotated world view")
+  public void projectShouldMatchWorldView() {
+    MapProjector projector = new MapProjector(snapshot(0, 0, 0, 512, 512));
+
+    assertPoint(projector.project(0, 0), 256, 256);
+    assertPoint(projector.project(90, 0), 384, 256);
+    assertPoint(projector.project(-180, 0), 0, 256);
+    assertPoint(projector.project(0, 45), 256, 184.17921890058497);
+    // Latitudes are clamped to the Web Mercator limit (85.051129, edge of the world)
+    Assert.assertEquals(projector.project(0, 89)[1], 0, 1e-4);
+  }
+
+  @Test(description = "unproject() should match map.unproject() on an unrotated world view")
+  public void unprojectShouldMatchWorldView() {
+    MapProjector projector = new MapProjector(snapshot(0, 0, 0, 512, 512));
+
+    assertPoint(projector.unproject(256, 256), 0, 0);
+    assertPoint(projector.unproject(384, 256), 90, 0);
+    assertPoint(projector.unproject(256, 184.17921890058497), 0, 45);
+  }
+
+  @Test(description = "project() should scale with zoom and tile size around the center")
+  public void projectShouldScaleWithZoom() {
+    CameraSnapshot snapshot = snapshot(10, 20, 3, 800, 600);
+    MapProjector projector = new MapProjector(snapshot);
+
+    assertPoint(projector.project(10, 20), 400, 300);
+    // 512 * 2^3 px per 360 degrees
+    assertPoint(projector.project(10 + 360.0 / 4096 * 100, 20), 500, 300);
+  }
+
+  @Test(description = "project() should add the canvas container offset")
+  public void projectShouldAddOffset() {
+    CameraSnapshot snapshot = snapshot(0, 0, 0, 512, 512);
+    snapshot.offsetX = 30;
+    snapshot.offsetY = 40;
+    MapProjector projector = new MapProjector(snapshot);
+
+    assertPoint(projector.project(0, 0), 286, 296);
+    assertPoint(projector.unproject(286, 296), 0, 0);
+  }
+
+  @Test(description = "project() should put the center in the middle of the padded area")
+  public void projectShouldHonorPadding() {
+    CameraSnapshot snapshot = snapshot(10, 20, 3, 800, 600);
+    snapshot.padding = new PaddingOptions();
+    snapshot.padding.left = 200.0;
+    snapshot.padding.top = 100.0;
+    MapProjector projector = new MapProjector(snapshot);
+
+    assertPoint(projector.project(10, 20), 500, 350);
+  }
+
+  @Test(description = "project() should rotate by bearing, east is up at bearing 90")
+  public void projectShouldRotateByBearing() {
+    CameraSnapshot snapshot = snapshot(0, 0, 3, 800, 600);
+    snapshot.bearing = 90;
+    MapProjector projector = new MapProjector(snapshot);
+
+    assertPoint(projector.project(360.0 / 4096 * 100, 0), 400, 200);
+  }
+
+  @Test(description = "unproject() should invert project() on a pitched and rotated view")
+  public void unprojectShouldInvertPitchedView() {
+    CameraSnapshot snapshot = snapshot(13.4, 52.5, 12.5, 1024, 768);
+    snapshot.bearing = -37;
+    snapshot.pitch = 60;
+    snapshot.offsetX = 12;
+    snapshot.offsetY = 80;
+    MapProjector projector = new MapProjector(snapshot);
+
+    assertPoint(projector.project(13.4, 52.5), 524, 464);
+
+    for (double[] lngLat : new double[][] { { 13.41, 52.51 }, { 13.39, 52.49 }, { 13.405, 52.495 } }) {
+      double[] point = projector.project(lngLat[0], lngLat[1]);
+
+      assertPoint(projector.unproject(point[0], point[1]), lngLat[0], lngLat[1]);
+    }
+
+    // Pitch shortens distances towards the horizon (north, up at this bearing)
+    double[] north = projector.project(13.4, 52.505);
+    double[] south = projector.project(13.4, 52.495);
+    Assert.assertTrue(Math.hypot(north[0] - 524, north[1] - 464) < Math.hypot(south[0] - 524, south[1] - 464));
+  }
+
+  @Test(description = "project(LngLat) should round like projectLngLatToScreenPoint")
+  public void projectShouldRoundScreenPoint() {
+    MapProjector projector = new MapProjector(snapshot(0, 0, 0, 512, 512));
+    ScreenPoint point = projector.project(new LngLat(0, 45));
+
+    Assert.assertEquals(point.x, 256);
+    Assert.assertEquals(point.y, 184);
+  }
+
+  private static CameraSnapshot snapshot(double lng, double lat, double zoom, double width, double height) {
+    CameraSnapshot snapshot = new CameraSnapshot();
+    snapshot.center = new LngLat(lng, lat);
+    snapshot.zoom = zoom;
+    snapshot.fov = DEFAULT_FOV;
+    snapshot.tileSize = 512;
+    snapshot.width = width;
+    snapshot.height = height;
+
+    return snapshot;
+  }
+
+  private static void assertPoint(double[] actual, double x, double y) {
+    Assert.assertEquals(actual[0], x, DELTA);
+    Assert.assertEquals(actual[1], y, DELTA);
+  }
+}
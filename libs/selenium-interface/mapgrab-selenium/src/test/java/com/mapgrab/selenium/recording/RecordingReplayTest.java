@@ -0,0 +1,108 @@
+package com.mapgrab.selenium.recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.mapgrab.selenium.BoundingBox;
+import com.mapgrab.selenium.MapController;
+import com.mapgrab.selenium.MapGrabContext;
+import com.mapgrab.selenium.controller.LngLat;
+import com.mapgrab.selenium.controller.ScreenPoint;
+
+public class RecordingReplayTest {
+  // Answers commands like the page would, projections depend on the passed coordinates
+  static class FakePage implements JavascriptExecutor {
+    @Override
+    public Object executeScript(String script, Object... args) {
+      return null;
+    }
+
+    @Override
+    public Object executeAsyncScript(String script, Object... args) {
+      Map<String, Object> envelope = new HashMap<String, Object>();
+      envelope.put("generation", "g1");
+
+      if (script.contains("state.queue.splice(0)")) {
+        envelope.put("result", "{\"captures\":[{\"layerId\":\"roads\",\"png\":\"AQID\"}],\"done\":true}");
+      } else if (script.contains("captureLayers(args.params[0]")) {
+        envelope.put("result", "\"started\"");
+      } else if (((String) args[0]).contains("\"lng\"")) {
+        String arguments = (String) args[0];
+        double lng = Double.parseDouble(arguments.replaceAll(".*\"lng\":(-?[0-9.]+).*", "$1"));
+        envelope.put("result", "{\"x\":" + Math.round(lng * 10) + ",\"y\":7}");
+      } else {
+        envelope.put("result", "null");
+      }
+
+      return envelope;
+    }
+  }
+
+  @Test(description = "recorded session should replay with other timeouts and capture ids")
+  public void shouldReplayRecordedSession() throws IOException {
+    RecordingJavascriptExecutor recorder = new RecordingJavascriptExecutor(new FakePage());
+    MapGrabContext recordContext = new MapGrabContext(null).setExecutor(recorder).setTimeout(Duration.ofSeconds(20));
+    ScreenPoint recorded = this.run(recordContext);
+
+    Path file = Files.createTempFile("mapgrab-recording", ".json.gz");
+
+    try {
+      recorder.getRecording().write(file);
+
+      ReplayJavascriptExecutor replay = ReplayJavascriptExecutor.load(file, ReplayTiming.ZERO);
+      // Another timeout changes the per-call budget sent to the page
+      MapGrabContext replayContext = new MapGrabContext(null).setExecutor(replay).setTimeout(Duration.ofSeconds(7));
+      ScreenPoint replayed = this.run(replayContext);
+
+      Assert.assertEquals(replayed.x, recorded.x);
+      Assert.assertEquals(replayed.y, recorded.y);
+      Assert.assertEquals(replay.remaining(), 0);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test(description = "call with other params should not match recording", expectedExceptions = ReplayMismatchError.class)
+  public void shouldRejectDifferentParams() {
+    RecordingJavascriptExecutor recorder = new RecordingJavascriptExecutor(new FakePage());
+    new MapController(new MapGrabContext(null).setExecutor(recorder), "mainMap")
+        .projectLngLatToScreenPoint(new LngLat(1, 2));
+
+    ReplayJavascriptExecutor replay = new ReplayJavascriptExecutor(recorder.getRecording(), ReplayTiming.ZERO);
+    new MapController(new MapGrabContext(null).setExecutor(replay), "mainMap")
+        .projectLngLatToScreenPoint(new LngLat(3, 2));
+  }
+
+  @Test(description = "nested JSON arguments should be normalized")
+  public void shouldNormalizeNestedArguments() {
+    RecordingJavascriptExecutor recorder = new RecordingJavascriptExecutor(new FakePage());
+    recorder.executeAsyncScript("batch", "{\"calls\":[\"{\\\"mapId\\\":\\\"m\\\",\\\"timeout\\\":100}\"],\"budgets\":[90]}");
+
+    ReplayJavascriptExecutor replay = new ReplayJavascriptExecutor(recorder.getRecording(), ReplayTiming.ZERO);
+    Object response = replay.executeAsyncScript("batch",
+        "{\"calls\":[\"{\\\"mapId\\\":\\\"m\\\",\\\"timeout\\\":250}\"],\"budgets\":[240]}");
+
+    Assert.assertNotNull(response);
+    Assert.assertEquals(replay.remaining(), 0);
+  }
+
+  private ScreenPoint run(MapGrabContext context) {
+    MapController controller = new MapController(context, "mainMap");
+    ScreenPoint point = controller.projectLngLatToScreenPoint(new LngLat(12.5, 41.9));
+    LinkedHashMap<String, byte[]> captures = controller.captureLayers(new String[] { "roads" },
+        new BoundingBox(0, 0, 10, 10));
+
+    Assert.assertEquals(captures.get("roads"), new byte[] { 1, 2, 3 });
+
+    return point;
+  }
+}
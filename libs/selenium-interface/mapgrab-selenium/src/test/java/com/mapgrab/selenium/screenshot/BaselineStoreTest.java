@@ -0,0 +1,154 @@
+package com.mapgrab.selenium.screenshot;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BaselineStoreTest {
+  Path root;
+
+  @BeforeMethod
+  public void beforeEach() throws IOException {
+    root = Files.createTempDirectory("mapgrab-baselines");
+  }
+
+  @AfterMethod
+  public void afterEach() throws IOException {
+    try (Stream<Path> paths = Files.walk(root)) {
+      paths.sorted(Comparator.reverseOrder()).forEach((path) -> path.toFile().delete());
+    }
+  }
+
+  @Test(description = "stored baseline should be found after reopen")
+  public void shouldRoundTripThroughReopen() throws IOException {
+    byte[] png = png(gradient(64, 48, 0));
+    BaselineStore.Entry stored;
+
+    try (BaselineStore store = BaselineStore.open(root)) {
+      stored = store.put("map/start", png);
+    }
+
+    try (BaselineStore store = BaselineStore.open(root)) {
+      BaselineStore.Entry entry = store.get("map/start");
+
+      Assert.assertNotNull(entry);
+      Assert.assertEquals(entry.contentHash, stored.contentHash);
+      Assert.assertEquals(entry.width, 64);
+      Assert.assertEquals(entry.height, 48);
+      Assert.assertEquals(entry.perceptualHash, PerceptualHash.of(gradient(64, 48, 0)));
+      Assert.assertEquals(store.read(entry), png);
+      Assert.assertNull(store.get("map/missing"));
+    }
+  }
+
+  @Test(description = "findSimilar should return baselines by Hamming distance, closest first")
+  public void shouldFindNearestByPerceptualHash() throws IOException {
+    BufferedImage base = gradient(64, 48, 0);
+    BufferedImage shifted = gradient(64, 48, 1);
+    BufferedImage other = checkerboard(64, 48);
+
+    try (BaselineStore store = BaselineStore.open(root)) {
+      store.put("other", png(other));
+      store.put("base", png(base));
+    }
+
+    try (BaselineStore store = BaselineStore.open(root)) {
+      List<BaselineStore.Entry> similar = store.findSimilar(shifted, 64);
+
+      Assert.assertEquals(similar.size(), 2);
+      Assert.assertEquals(similar.get(0).contentHash, store.get("base").contentHash);
+      long hash = PerceptualHash.of(shifted);
+      Assert.assertTrue(PerceptualHash.distance(hash, similar.get(0).perceptualHash) <= PerceptualHash.distance(hash,
+          similar.get(1).perceptualHash));
+
+      List<BaselineStore.Entry> exact = store.findSimilar(base, 0);
+      Assert.assertEquals(exact.size(), 1);
+      Assert.assertEquals(exact.get(0).contentHash, store.get("base").contentHash);
+    }
+  }
+
+  @Test(description = "writing same content twice should store one object")
+  public void duplicateWriteShouldBeIdempotent() throws IOException {
+    byte[] png = png(gradient(32, 32, 0));
+
+    try (BaselineStore store = BaselineStore.open(root)) {
+      BaselineStore.Entry first = store.put("a", png);
+      BaselineStore.Entry second = store.put("b", png);
+      store.put("a", png);
+
+      Assert.assertEquals(second.contentHash, first.contentHash);
+    }
+
+    try (BaselineStore store = BaselineStore.open(root); Stream<Path> objects = Files.walk(root.resolve("objects"))) {
+      Assert.assertEquals(objects.filter(Files::isRegularFile).count(), 1);
+      Assert.assertEquals(store.findSimilar(gradient(32, 32, 0), 64).size(), 1);
+      Assert.assertEquals(store.get("b").contentHash, store.get("a").contentHash);
+    }
+  }
+
+  @Test(description = "verify should store missing baseline and match identical capture")
+  public void verifyShouldCreateAndMatchBaseline() throws IOException {
+    byte[] png = png(gradient(32, 32, 0));
+
+    try (BaselineStore store = BaselineStore.open(root)) {
+      Assert.assertTrue(store.verify("v", png).newBaseline);
+
+      ImageDiffResult result = store.verify("v", png);
+      Assert.assertTrue(result.matches);
+      Assert.assertFalse(result.newBaseline);
+      Assert.assertFalse(store.verify("v", png(checkerboard(32, 32))).matches);
+    }
+  }
+
+  @Test(description = "perceptual hash distance should be symmetric Hamming distance")
+  public void perceptualHashDistanceShouldCountBits() {
+    Assert.assertEquals(PerceptualHash.distance(0L, 0L), 0);
+    Assert.assertEquals(PerceptualHash.distance(0b1011L, 0b0001L), 2);
+    Assert.assertEquals(PerceptualHash.distance(-1L, 0L), 64);
+    Assert.assertEquals(PerceptualHash.of(gradient(64, 48, 0)), PerceptualHash.of(gradient(64, 48, 0)));
+  }
+
+  private static BufferedImage gradient(int width, int height, int shift) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int value = Math.min(255, (x + shift) * 255 / width);
+        image.setRGB(x, y, value << 16 | (255 - value) << 8 | (y * 255 / height));
+      }
+    }
+
+    return image;
+  }
+
+  private static BufferedImage checkerboard(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, ((x / 8 + y / 8) % 2 == 0) ? 0xFFFFFF : 0);
+      }
+    }
+
+    return image;
+  }
+
+  private static byte[] png(BufferedImage image) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", out);
+
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,153 @@
+package com.mapgrab.selenium.screenshot;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.mapgrab.selenium.BoundingBox;
+
+public class MapImageDiffTest {
+  private static final int WHITE = 0xFFFFFFFF;
+  private static final int BLACK = 0xFF000000;
+  private static final int RED = 0xFFFF0000;
+
+  @Test(description = "identical images should match")
+  public void identicalImagesShouldMatch() {
+    ImageDiffResult result = new MapImageDiff().compare(filled(200, 150, WHITE), filled(200, 150, WHITE));
+
+    Assert.assertTrue(result.matches);
+    Assert.assertTrue(result.complete);
+    Assert.assertEquals(result.differentPixels, 0);
+    Assert.assertTrue(result.regions.isEmpty());
+  }
+
+  @Test(description = "one differing pixel should be reported with its region")
+  public void onePixelDiffShouldBeReported() {
+    BufferedImage actual = filled(200, 150, WHITE);
+    actual.setRGB(70, 90, RED);
+
+    ImageDiffResult result = new MapImageDiff().exhaustive(true).compare(filled(200, 150, WHITE), actual);
+
+    Assert.assertFalse(result.matches);
+    Assert.assertTrue(result.complete);
+    Assert.assertEquals(result.differentPixels, 1);
+    Assert.assertEquals(result.regions.size(), 1);
+    BoundingBox region = result.regions.get(0);
+    Assert.assertEquals(new int[] { region.x, region.y, region.width, region.height }, new int[] { 70, 90, 1, 1 });
+  }
+
+  @Test(description = "difference within color tolerance should match")
+  public void colorToleranceShouldBeApplied() {
+    ImageDiffResult result = new MapImageDiff().colorTolerance(8).compare(filled(32, 32, 0xFF808080),
+        filled(32, 32, 0xFF868686));
+
+    Assert.assertTrue(result.matches);
+  }
+
+  @Test(description = "anti-aliased edge pixel should be ignored unless disabled")
+  public void antiAliasedPixelShouldBeIgnored() {
+    BufferedImage expected = edge(40, 40, 0xFF808080);
+    BufferedImage actual = edge(40, 40, 0xFF808080);
+    // Edge pixel between the black and white halves rendered with another shade
+    actual.setRGB(20, 20, 0xFF404040);
+
+    Assert.assertTrue(new MapImageDiff().compare(expected, actual).matches);
+
+    ImageDiffResult strict = new MapImageDiff().antiAliasing(false).compare(expected, actual);
+    Assert.assertFalse(strict.matches);
+    Assert.assertEquals(strict.differentPixels, 1);
+  }
+
+  @Test(description = "threshold should accept up to the given number of pixels")
+  public void thresholdShouldBeApplied() {
+    BufferedImage actual = filled(100, 100, WHITE);
+    actual.setRGB(10, 10, RED);
+    actual.setRGB(90, 90, RED);
+
+    Assert.assertTrue(new MapImageDiff().threshold(2).compare(filled(100, 100, WHITE), actual).matches);
+    Assert.assertFalse(new MapImageDiff().threshold(1).compare(filled(100, 100, WHITE), actual).matches);
+  }
+
+  @Test(description = "comparison should stop once threshold is exceeded unless exhaustive")
+  public void shouldExitEarly() {
+    ForkJoinPool pool = new ForkJoinPool(1);
+
+    try {
+      BufferedImage expected = filled(256, 256, WHITE);
+      BufferedImage actual = filled(256, 256, BLACK);
+
+      ImageDiffResult early = new MapImageDiff().tileSize(16).pool(pool).compare(expected, actual);
+      Assert.assertFalse(early.matches);
+      Assert.assertFalse(early.complete);
+      Assert.assertTrue(early.differentPixels < 256 * 256);
+
+      ImageDiffResult exhaustive = new MapImageDiff().tileSize(16).pool(pool).exhaustive(true).compare(expected,
+          actual);
+      Assert.assertTrue(exhaustive.complete);
+      Assert.assertEquals(exhaustive.differentPixels, 256 * 256);
+      Assert.assertEquals(exhaustive.regions.size(), 1);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test(description = "non exhaustive run that compared every tile should be complete")
+  public void singleTileRunShouldBeComplete() {
+    ImageDiffResult result = new MapImageDiff().compare(filled(32, 32, WHITE), filled(32, 32, BLACK));
+
+    Assert.assertFalse(result.matches);
+    Assert.assertTrue(result.complete);
+  }
+
+  @Test(description = "byte rasters should compare like int rasters")
+  public void byteRastersShouldBeCompared() {
+    BufferedImage expected = new BufferedImage(50, 40, BufferedImage.TYPE_4BYTE_ABGR);
+    BufferedImage actual = new BufferedImage(50, 40, BufferedImage.TYPE_3BYTE_BGR);
+    fill(expected, 0xFF336699);
+    fill(actual, 0xFF336699);
+    actual.setRGB(5, 6, RED);
+
+    ImageDiffResult result = new MapImageDiff().compare(expected, actual);
+
+    Assert.assertEquals(result.differentPixels, 1);
+    Assert.assertEquals(result.regions.get(0).x, 5);
+    Assert.assertEquals(result.regions.get(0).y, 6);
+  }
+
+  @Test(description = "tile size should be positive", expectedExceptions = IllegalArgumentException.class)
+  public void tileSizeShouldBeValidated() {
+    new MapImageDiff().tileSize(0);
+  }
+
+  private static BufferedImage filled(int width, int height, int argb) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    fill(image, argb);
+
+    return image;
+  }
+
+  private static void fill(BufferedImage image, int argb) {
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        image.setRGB(x, y, argb);
+      }
+    }
+  }
+
+  // Black left half, white right half and one column of the given shade between them
+  private static BufferedImage edge(int width, int height, int shade) {
+    BufferedImage image = filled(width, height, WHITE);
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width / 2; x++) {
+        image.setRGB(x, y, BLACK);
+      }
+
+      image.setRGB(width / 2, y, shade);
+    }
+
+    return image;
+  }
+}
@@ -0,0 +1,137 @@
+package com.mapgrab.selenium.spatial;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.mapgrab.selenium.BoundingBox;
+import com.mapgrab.selenium.SingleResult;
+
+public class ResultIndexTest {
+  @DataProvider
+  public Object[][] sizes() {
+    // Empty, single level tree, NODE_SIZE boundary and a deep tree
+    return new Object[][] { { 0 }, { 1 }, { 16 }, { 17 }, { 5000 } };
+  }
+
+  @Test(dataProvider = "sizes", description = "at() should match linear scan")
+  public void atShouldMatchLinearScan(int size) {
+    Random random = new Random(size);
+    List<SingleResult> results = randomResults(random, size);
+    ResultIndex<SingleResult> index = ResultIndex.of(results);
+
+    for (int i = 0; i < 200; i++) {
+      int x = random.nextInt(1100) - 50;
+      int y = random.nextInt(1100) - 50;
+
+      Assert.assertEquals(index.at(x, y), scan(results, x, y, x, y));
+    }
+  }
+
+  @Test(dataProvider = "sizes", description = "intersecting() should match linear scan")
+  public void intersectingShouldMatchLinearScan(int size) {
+    Random random = new Random(size);
+    List<SingleResult> results = randomResults(random, size);
+    ResultIndex<SingleResult> index = ResultIndex.of(results);
+
+    for (int i = 0; i < 200; i++) {
+      BoundingBox rect = randomRect(random, 200);
+
+      Assert.assertEquals(index.intersecting(rect), scan(results, rect.x, rect.y, rect.right, rect.bottom));
+    }
+  }
+
+  @Test(dataProvider = "sizes", description = "overlapping() should match linear scan")
+  public void overlappingShouldMatchLinearScan(int size) {
+    Random random = new Random(size);
+    List<SingleResult> results = randomResults(random, size);
+    ResultIndex<SingleResult> index = ResultIndex.of(results);
+
+    for (SingleResult result : results.subList(0, Math.min(size, 100))) {
+      BoundingBox rect = result.getDisplay();
+      ArrayList<SingleResult> expected = new ArrayList<SingleResult>();
+
+      for (SingleResult candidate : results) {
+        BoundingBox other = candidate.getDisplay();
+
+        if (candidate != result && other.x < rect.right && rect.x < other.right && other.y < rect.bottom
+            && rect.y < other.bottom) {
+          expected.add(candidate);
+        }
+      }
+
+      Assert.assertEquals(index.overlapping(result), expected);
+    }
+  }
+
+  @Test(dataProvider = "sizes", description = "nearest() should return k smallest distances in order")
+  public void nearestShouldMatchLinearScan(int size) {
+    Random random = new Random(size);
+    List<SingleResult> results = randomResults(random, size);
+    ResultIndex<SingleResult> index = ResultIndex.of(results);
+
+    for (int i = 0; i < 100; i++) {
+      int x = random.nextInt(1100) - 50;
+      int y = random.nextInt(1100) - 50;
+      int k = 1 + random.nextInt(20);
+
+      // Ties may come in any order, compare distances
+      List<Long> expected = results.stream().map((result) -> distance(result, x, y)).sorted()
+          .limit(k).toList();
+      List<Long> actual = index.nearest(x, y, k).stream().map((result) -> distance(result, x, y)).toList();
+
+      Assert.assertEquals(actual, expected);
+    }
+  }
+
+  @Test(description = "rect edges should be inclusive")
+  public void edgesShouldBeInclusive() {
+    List<SingleResult> results = List.of(result(new BoundingBox(10, 10, 5, 5)));
+    ResultIndex<SingleResult> index = ResultIndex.of(results);
+
+    Assert.assertEquals(index.at(15, 15).size(), 1);
+    Assert.assertEquals(index.at(16, 15).size(), 0);
+  }
+
+  private static List<SingleResult> randomResults(Random random, int size) {
+    ArrayList<SingleResult> results = new ArrayList<SingleResult>(size);
+
+    for (int i = 0; i < size; i++) {
+      results.add(result(randomRect(random, 60)));
+    }
+
+    return results;
+  }
+
+  private static BoundingBox randomRect(Random random, int maxSize) {
+    return new BoundingBox(random.nextInt(1000), random.nextInt(1000), random.nextInt(maxSize),
+        random.nextInt(maxSize));
+  }
+
+  private static SingleResult result(BoundingBox rect) {
+    SingleResult result = new SingleResult();
+    result.rect = rect;
+
+    return result;
+  }
+
+  private static List<SingleResult> scan(List<SingleResult> results, int minX, int minY, int maxX, int maxY) {
+    return results.stream().filter((result) -> {
+      BoundingBox rect = result.getDisplay();
+
+      return rect.x <= maxX && rect.y <= maxY && rect.right >= minX && rect.bottom >= minY;
+    }).toList();
+  }
+
+  private static long distance(SingleResult result, int x, int y) {
+    BoundingBox rect = result.getDisplay();
+    long dx = Math.max(0, Math.max((long) rect.x - x, (long) x - rect.right));
+    long dy = Math.max(0, Math.max((long) rect.y - y, (long) y - rect.bottom));
+
+    return dx * dx + dy * dy;
+  }
+}